@@ -45,4 +45,11 @@ public interface CFCanvas {
     void drawRect(double x, double y, double width, double height);
 
     boolean hasError();
+
+    default void flush() {
+    }
+
+    default boolean isVisible(double minX, double minY, double maxX, double maxY) {
+        return true;
+    }
 }
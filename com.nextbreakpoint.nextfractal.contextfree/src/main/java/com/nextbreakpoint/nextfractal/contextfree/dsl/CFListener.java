@@ -26,4 +26,7 @@ package com.nextbreakpoint.nextfractal.contextfree.dsl;
 
 public interface CFListener {
     void draw();
+
+    default void stats(CFStats stats) {
+    }
 }
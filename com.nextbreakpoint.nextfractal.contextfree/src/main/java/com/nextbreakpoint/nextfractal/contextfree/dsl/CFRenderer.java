@@ -31,6 +31,16 @@ import java.util.List;
 public interface CFRenderer {
     void run(CFCanvas canvas, boolean partialDraw);
 
+    void draw(CFCanvas canvas);
+
+    void setRetainShapes(boolean retainShapes);
+
+    void releaseShapes();
+
+    // the renderer returned draws the shapes retained by this renderer with its own state,
+    // therefore different canvases can be drawn concurrently, each one with its own renderer
+    CFRenderer createDrawer();
+
     void stop();
 
     void setListener(CFListener listener);
@@ -0,0 +1,346 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.contextfree.dsl.parser;
+
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFCanvas;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.FlagType;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.PrimShapeType;
+import com.nextbreakpoint.nextfractal.core.graphics.Tile;
+import lombok.extern.java.Log;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+/**
+ * Canvas which splits the image in horizontal bands and rasterizes the bands concurrently.
+ * Commands are binned by bounds into the bands they touch, therefore the order of the shapes
+ * is preserved within each band. Commands are rasterized in batches, while the next batch is recorded.
+ * The commands of two batches are preallocated and reused, so that recording doesn't allocate.
+ */
+@Log
+public class BandedCanvas implements CFCanvas {
+    private static final int BATCH_SIZE = 4096;
+
+    private final ExecutorService executor;
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final Command[][] batches = new Command[2][BATCH_SIZE];
+    private final AffineTransform boundsTransform = new AffineTransform();
+    private final double[] corners = new double[8];
+    private final Band[] bands;
+    private final int bandHeight;
+    private final int width;
+    private final int height;
+    private Command[] batch;
+    private int batchSize;
+    private volatile boolean error;
+
+    public BandedCanvas(BufferedImage image, RenderingHints hints, Tile tile, int bandCount, ExecutorService executor) {
+        this.executor = executor;
+        width = image.getWidth();
+        height = image.getHeight();
+        final int count = Math.max(1, Math.min(bandCount, height));
+        bandHeight = (height + count - 1) / count;
+        bands = new Band[count];
+        for (int i = 0; i < count; i++) {
+            final Graphics2D g2d = image.createGraphics();
+            g2d.setRenderingHints(hints);
+            g2d.clipRect(0, i * bandHeight, width, bandHeight);
+            bands[i] = new Band(g2d, new SimpleCanvas(g2d, tile));
+        }
+        for (Command[] commands : batches) {
+            for (int i = 0; i < commands.length; i++) {
+                commands[i] = new Command();
+            }
+        }
+        batch = batches[0];
+    }
+
+    @Override
+    public int getWidth() {
+        return bands[0].canvas.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bands[0].canvas.getHeight();
+    }
+
+    @Override
+    public void primitive(int shapeType, double[] color, AffineTransform transform, int blend) {
+        final PrimShape primShape = PrimShape.getShapeMap().get(shapeType);
+        final Command command = nextCommand(CommandType.PRIMITIVE, color, transform, blend);
+        command.shapeType = shapeType;
+        if (shapeType == PrimShapeType.fillType.getType() || primShape == null) {
+            enqueue(0, bands.length - 1);
+        } else {
+            updateBounds(transform, primShape.getPath(), 0);
+            enqueue(bandIndex(corners[1]), bandIndex(corners[3]));
+        }
+    }
+
+    @Override
+    public void path(double[] color, AffineTransform transform, GeneralPath path, long flags, double strokeWidth, double miterLimit, int blend) {
+        final Command command = nextCommand(CommandType.PATH, color, transform, blend);
+        // the path is reused by the renderer, therefore we need a copy
+        command.path.reset();
+        command.path.setWindingRule(path.getWindingRule());
+        command.path.append(path, false);
+        command.flags = flags;
+        command.strokeWidth = strokeWidth;
+        command.miterLimit = miterLimit;
+        double stroke = 0;
+        if ((flags & FlagType.CF_FILL.getMask()) == 0) {
+            final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+            stroke = strokeWidth * scale * Math.max(1, miterLimit);
+            if ((flags & FlagType.CF_ISO_WIDTH.getMask()) != 0) {
+                stroke *= scale;
+            }
+        }
+        updateBounds(transform, path, stroke);
+        enqueue(bandIndex(corners[1]), bandIndex(corners[3]));
+    }
+
+    @Override
+    public void start(boolean first, double[] backgroundColor, int currWidth, int currHeight) {
+        flush();
+        for (Band band : bands) {
+            band.canvas.start(first, backgroundColor, currWidth, currHeight);
+        }
+    }
+
+    @Override
+    public void end() {
+        flush();
+        for (Band band : bands) {
+            band.canvas.end();
+        }
+    }
+
+    @Override
+    public void clear(double[] backgroundColor) {
+        nextCommand(CommandType.CLEAR, backgroundColor, null, 0);
+        enqueue(0, bands.length - 1);
+        submitBatch();
+    }
+
+    @Override
+    public void drawRect(double x, double y, double width, double height) {
+        final Command command = nextCommand(CommandType.RECT, null, null, 0);
+        command.x = x;
+        command.y = y;
+        command.width = width;
+        command.height = height;
+        enqueue(0, bands.length - 1);
+    }
+
+    @Override
+    public boolean hasError() {
+        return error;
+    }
+
+    @Override
+    public void flush() {
+        submitBatch();
+        awaitBatch();
+    }
+
+    @Override
+    public boolean isVisible(double minX, double minY, double maxX, double maxY) {
+        return bands[0].canvas.isVisible(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Waits for the pending commands and disposes the graphics of the bands.
+     * It must be called when the canvas is not required anymore, even if the rendering failed.
+     */
+    public void dispose() {
+        awaitBatch();
+        for (Band band : bands) {
+            band.g2d.dispose();
+        }
+    }
+
+    private Command nextCommand(CommandType type, double[] color, AffineTransform transform, int blend) {
+        final Command command = batch[batchSize];
+        command.type = type;
+        command.blend = blend;
+        if (color != null) {
+            if (command.color.length != color.length) {
+                command.color = new double[color.length];
+            }
+            System.arraycopy(color, 0, command.color, 0, color.length);
+        }
+        if (transform != null) {
+            command.transform.setTransform(transform);
+        }
+        return command;
+    }
+
+    private void updateBounds(AffineTransform transform, java.awt.Shape shape, double stroke) {
+        final AffineTransform t = boundsTransform;
+        t.setTransform(bands[0].canvas.getNormTransform());
+        t.concatenate(transform);
+        final Rectangle2D bounds = shape.getBounds2D();
+        corners[0] = bounds.getMinX();
+        corners[1] = bounds.getMinY();
+        corners[2] = bounds.getMaxX();
+        corners[3] = bounds.getMinY();
+        corners[4] = bounds.getMaxX();
+        corners[5] = bounds.getMaxY();
+        corners[6] = bounds.getMinX();
+        corners[7] = bounds.getMaxY();
+        t.transform(corners, 0, corners, 0, 4);
+        double minY = corners[1];
+        double maxY = corners[1];
+        for (int i = 3; i < corners.length; i += 2) {
+            minY = Math.min(minY, corners[i]);
+            maxY = Math.max(maxY, corners[i]);
+        }
+        // extra pixel for antialiasing
+        final double border = stroke / 2 + 1;
+        corners[1] = minY - border;
+        corners[3] = maxY + border;
+    }
+
+    private int bandIndex(double y) {
+        if (!Double.isFinite(y)) {
+            return y > 0 ? bands.length - 1 : 0;
+        }
+        return (int) Math.max(0, Math.min(bands.length - 1, Math.floor(y / bandHeight)));
+    }
+
+    private void enqueue(int first, int last) {
+        for (int i = first; i <= last; i++) {
+            bands[i].add(batchSize);
+        }
+        batchSize += 1;
+        if (batchSize >= BATCH_SIZE) {
+            submitBatch();
+        }
+    }
+
+    private void submitBatch() {
+        awaitBatch();
+        final Command[] commands = batch;
+        for (Band band : bands) {
+            if (band.size > 0) {
+                final int[] indices = band.swap();
+                final int size = band.pendingSize;
+                futures.add(executor.submit(() -> band.execute(commands, indices, size)));
+            }
+        }
+        // the other batch is not in use anymore because the previous batch has completed
+        batch = batch == batches[0] ? batches[1] : batches[0];
+        batchSize = 0;
+    }
+
+    private void awaitBatch() {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+        } catch (ExecutionException e) {
+            log.log(Level.WARNING, "Can't draw shapes", e);
+            error = true;
+        } finally {
+            futures.clear();
+        }
+    }
+
+    private enum CommandType {
+        PRIMITIVE, PATH, CLEAR, RECT
+    }
+
+    private static class Command {
+        private final AffineTransform transform = new AffineTransform();
+        private final GeneralPath path = new GeneralPath();
+        private double[] color = new double[4];
+        private CommandType type;
+        private int shapeType;
+        private int blend;
+        private long flags;
+        private double strokeWidth;
+        private double miterLimit;
+        private double x;
+        private double y;
+        private double width;
+        private double height;
+
+        private void execute(SimpleCanvas canvas) {
+            switch (type) {
+                case PRIMITIVE -> canvas.primitive(shapeType, color, transform, blend);
+                case PATH -> canvas.path(color, transform, path, flags, strokeWidth, miterLimit, blend);
+                case CLEAR -> canvas.clear(color);
+                case RECT -> canvas.drawRect(x, y, width, height);
+            }
+        }
+    }
+
+    private static class Band {
+        private final Graphics2D g2d;
+        private final SimpleCanvas canvas;
+        private int[] indices = new int[BATCH_SIZE];
+        private int[] pendingIndices = new int[BATCH_SIZE];
+        private int size;
+        private int pendingSize;
+
+        public Band(Graphics2D g2d, SimpleCanvas canvas) {
+            this.g2d = g2d;
+            this.canvas = canvas;
+        }
+
+        private void add(int index) {
+            indices[size++] = index;
+        }
+
+        private int[] swap() {
+            final int[] recorded = indices;
+            indices = pendingIndices;
+            pendingIndices = recorded;
+            pendingSize = size;
+            size = 0;
+            return recorded;
+        }
+
+        private void execute(Command[] commands, int[] indices, int size) {
+            for (int i = 0; i < size; i++) {
+                commands[indices[i]].execute(canvas);
+            }
+        }
+    }
+}
@@ -106,7 +106,7 @@ public class CFDG {
 
 	@Getter
     private final ASTRepContainer contents;
-	private final ASTRule needle;
+	private RuleTable[] ruleTables = new RuleTable[0];
 
 	@Getter
     private double[] backgroundColor = new double[] { 1, 1, 1, 1 };
@@ -146,8 +146,6 @@ public class CFDG {
         contents = new ASTRepContainer(system, DEFAULT_WHERE);
 		contents.setGlobal(true);
 
-		needle = new ASTRule(system, DEFAULT_WHERE, -1);
-
 		PrimShape.getShapeNames()
 				.forEach(s -> encodeShapeName(s, contents.getWhere()));
 
@@ -232,13 +230,12 @@ public class CFDG {
 	}
 
 	public ASTRule findRule(int nameIndex, double weight) {
-		needle.setNameIndex(nameIndex);
-		needle.setWeight(weight);
-		int first = lowerBound(rules, 0, rules.size(), needle);
-		if (first == rules.size() || rules.get(first).getNameIndex() != nameIndex) {
+		final RuleTable[] tables = ruleTables;
+		final ASTRule rule = nameIndex >= 0 && nameIndex < tables.length && tables[nameIndex] != null ? tables[nameIndex].select(weight) : null;
+		if (rule == null) {
 			throw new CFDGException("Can't find a rule for a shape (very helpful I know)", DEFAULT_WHERE);
 		}
-		return rules.get(first);
+		return rule;
 	}
 
 	// Search for a rule in the mRules list even before it is sorted
@@ -519,6 +516,8 @@ public class CFDG {
 
 		Collections.sort(rules);
 
+		ruleTables = createRuleTables();
+
 		builder.setLocalStackDepth(0);
 		builder.setInPathContainer(false);
 		contents.compile(builder, CompilePhase.TypeCheck, null, null);
@@ -784,19 +783,54 @@ public class CFDG {
 		return rules.get(index);
 	}
 
-	private int lowerBound(List<ASTRule> rules, int first, int last, ASTRule val) {
-		// TODO verify lowerBound
-		int count = last - first;
-		while (count > 0) {
-			int step = count / 2;
-			int offset = first + step;
-			if (rules.get(offset).compareTo(val) < 0) {
-				first = first + 1;
-				count = step + 1;
-			} else {
-				count = step;
+	private RuleTable[] createRuleTables() {
+		final RuleTable[] tables = new RuleTable[shapeTypes.size()];
+		int first = 0;
+		while (first < rules.size()) {
+			final int nameIndex = rules.get(first).getNameIndex();
+			int last = first + 1;
+			while (last < rules.size() && rules.get(last).getNameIndex() == nameIndex) {
+				last += 1;
+			}
+			if (nameIndex >= 0 && nameIndex < tables.length) {
+				tables[nameIndex] = new RuleTable(rules.subList(first, last).toArray(new ASTRule[0]));
+			}
+			first = last;
+		}
+		return tables;
+	}
+
+	// Rules of a shape sorted by cumulative weight, with a guide table which maps
+	// the weight to the first candidate rule, so that selection takes constant time
+	// on average and returns the same rule as a binary search over the weights.
+	private static class RuleTable {
+		private final ASTRule[] rules;
+		private final double[] weights;
+		private final int[] guide;
+
+		public RuleTable(ASTRule[] rules) {
+			this.rules = rules;
+			weights = new double[rules.length];
+			for (int i = 0; i < rules.length; i++) {
+				weights[i] = rules[i].getWeight();
+			}
+			guide = new int[rules.length];
+			int index = 0;
+			for (int k = 0; k < guide.length; k++) {
+				final double weight = k / (double) guide.length;
+				while (index < weights.length - 1 && weights[index] < weight) {
+					index += 1;
+				}
+				guide[k] = index;
+			}
+		}
+
+		public ASTRule select(double weight) {
+			int index = weight > 0 ? guide[(int) Math.min(guide.length - 1, weight * guide.length)] : 0;
+			while (index < weights.length && weights[index] < weight) {
+				index += 1;
 			}
+			return index < rules.length ? rules[index] : null;
 		}
-		return first;
 	}
 }
@@ -27,6 +27,7 @@ package com.nextbreakpoint.nextfractal.contextfree.dsl.parser;
 import com.nextbreakpoint.nextfractal.contextfree.core.AffineTransformTime;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFCanvas;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFListener;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFStats;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast.AST;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast.ASTCompiledPath;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast.ASTDefine;
@@ -41,18 +42,30 @@ import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.FriezeType;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.PrimShapeType;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.RepElemType;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.ShapeType;
+import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.java.Log;
 
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_LARGEST_FIRST;
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_WORKERS;
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_SHAPES_MEMORY_LIMIT;
+
 // renderimpl.h
 // this file is part of Context Free
 // ---------------------
@@ -86,6 +99,13 @@ public class CFDGRenderer {
 	public static final int DRAW_AT = 1000;
 	public static final double MIN_AREA = 0.3;
 	public static final double MIN_SIZE = 0.3;
+	public static final long REPORT_INTERVAL = 1000;
+	private static final int EXPANSION_BATCH_SIZE = 256;
+	// the progress of the expansion stays below 1, because the final output is not drawn yet
+	private static final float MAX_EXPANSION_PROGRESS = 0.99f;
+	// a full redraw of the partial output reads all shapes, including spilled shapes, therefore
+	// the time between full redraws is at least this number of times the duration of the last one
+	private static final int FULL_REDRAW_INTERVAL_RATIO = 4;
 
 	private int width;
 	private int height;
@@ -188,15 +208,37 @@ public class CFDGRenderer {
 	private int shapeCount;
 	private int todoCount;
 	private boolean animating;
+	private boolean partialOutput;
+	private boolean partialDrawn;
+	private double partialZ;
+	private long fullRedrawTime;
+	private long fullRedrawDuration;
+	private float progress;
+	private long startTime;
+	// keeps finished shapes after run, so that they can be drawn again with draw
+	@Setter
+	private boolean retainShapes;
+	private boolean expanded;
+	private OutputBounds animationBounds;
 
 	private final List<AffineTransform> symmetryOps = new ArrayList<>();
 
 	private final List<CommandInfo> shapeMap = new ArrayList<>();
-	private final List<Shape> unfinishedShapes = new ArrayList<>();
-	private final List<FinishedShape> finishedShapes = new ArrayList<>();
+	// Shapes are expanded in the order they are produced by default, because the order determines the sequence numbers,
+	// and therefore the draw order of shapes with the same z. The deque removes the first shape in constant time.
+	// Optionally the largest shapes are expanded first, so that reaching maxShapes drops the least visible shapes,
+	// but shapes with the same z can be drawn in a different order than in the reference output.
+	private final boolean largestFirst = Boolean.getBoolean(PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_LARGEST_FIRST);
+	private final Queue<Shape> unfinishedShapes = largestFirst ? new PriorityQueue<>(Comparator.comparingDouble(Shape::getAreaCache).reversed()) : new ArrayDeque<>();
+	private FinishedShapeStore finishedShapes = new FinishedShapeStore(Long.getLong(PROPERTY_CONTEXTFREE_RENDERING_SHAPES_MEMORY_LIMIT, 200L * 1024L * 1024L));
 
 	private final ASTRule[] primitivePaths;
 
+	// expansion is sequential unless more workers are requested
+	private final int expansionWorkers = Integer.getInteger(PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_WORKERS, 1);
+	// collects the shapes produced by a worker, and it is null in the renderer which owns the shapes
+	private ExpansionResult expansionResult;
+
 	private CFStack cfStack;
 	private AffineTransform tileTransform;
 	@Getter
@@ -459,6 +501,8 @@ public class CFDGRenderer {
 	private void cleanup() {
 		finishedShapes.clear();
 		unfinishedShapes.clear();
+		expanded = false;
+		animationBounds = null;
 
 		unwindStack(0, cfdg.getContents().getParameters());
 
@@ -520,7 +564,14 @@ public class CFDGRenderer {
 			outputPrep(canvas);
 		}
 
-		int reportAt = 250;
+		startTime = System.currentTimeMillis();
+
+		partialOutput = partialDraw && canvas != null && !animating;
+		partialDrawn = false;
+		partialZ = Double.NEGATIVE_INFINITY;
+		fullRedrawTime = 0;
+		fullRedrawDuration = 0;
+		progress = 0;
 
 		{
 			final Shape initShape = cfdg.getInitialShape(this);
@@ -546,55 +597,11 @@ public class CFDGRenderer {
 
 		long time = System.currentTimeMillis();
 
-		for (;;) {
-			if (requestStop) {
-				break;
-			}
-
-			if (requestFinishUp) {
-				break;
-			}
-
-			if (unfinishedShapes.isEmpty()) {
-				break;
-			}
-
-			if (shapeCount + todoCount > maxShapes) {
-				break;
-			}
-
-			final Shape shape = (Shape) unfinishedShapes.removeFirst().clone();
-
-			todoCount -= 1;
-
-			try {
-				final ASTRule rule = cfdg.findRule(shape.getShapeType(), shape.getWorldState().getRand64Seed().getDouble());
-				drawingMode = false;
-				rule.traverseRule(builder, this, shape, false);
-			} catch (CFDGDeferUntilRuntimeException | CFDGStopException e) {
-				log.log(Level.INFO, "Stop rendering...", e);
-				break;
-			} catch (CFDGException e) {
-				log.log(Level.WARNING, "Can't render CFDG image", e);
-				requestStop = true;
-				cfdg.getSystem().error(e.getMessage(), e.getWhere());
-				break;
-			} catch (Exception e) {
-				log.log(Level.SEVERE, "Can't render CFDG image", e);
-				requestStop = true;
-				cfdg.getSystem().fail(e.getMessage());
-				break;
-			}
-
-			if (requestUpdate || shapeCount > reportAt) {
-				if (partialDraw) {
-					outputPartial();
-				}
-				outputStats();
-				reportAt = 2 * shapeCount;
-			}
-
-			Thread.yield();
+		// the concurrent expansion merges the shapes in the order they are produced, therefore it requires the deque
+		if (expansionWorkers > 1 && !largestFirst) {
+			expandConcurrently(partialDraw);
+		} else {
+			expandSequentially(partialDraw);
 		}
 
 		if (cfdg.usesTime() || !timed) {
@@ -622,16 +629,62 @@ public class CFDGRenderer {
 		long totalTime = System.currentTimeMillis() - time;
 		cfdg.getSystem().info("Rendering of " + outputSoFar + " shapes took " + totalTime / 1000.0 + "s", null);
 
+		if (!animating && !retainShapes) {
+			// release memory and temporary files used for finished shapes
+			finishedShapes.clear();
+		}
+
 		return currScale;
 	}
 
+	public void releaseShapes() {
+		finishedShapes.clear();
+		expanded = false;
+		animationBounds = null;
+	}
+
+	// the drawer shares the retained shapes, but it has its own state, therefore more drawers can draw concurrently
+	public CFDGRenderer createDrawer() {
+		finishedShapes.prepare();
+		final CFDGRenderer drawer = new CFDGRenderer(builder, width, height, minSize, variation, border);
+		drawer.setImpure(impure);
+		drawer.currentTime = currentTime;
+		drawer.currentFrame = currentFrame;
+		drawer.init();
+		drawer.tiled = tiled;
+		drawer.sized = sized;
+		drawer.timed = timed;
+		drawer.frieze = frieze;
+		drawer.friezeSize = friezeSize;
+		drawer.fixedBorderX = fixedBorderX;
+		drawer.fixedBorderY = fixedBorderY;
+		drawer.shapeBorder = shapeBorder;
+		drawer.bounds = new Bounds(bounds);
+		drawer.currScale = currScale;
+		drawer.currArea = currArea;
+		drawer.timeBounds = timeBounds;
+		drawer.totalArea = totalArea;
+		drawer.shapeCount = shapeCount;
+		drawer.maxShapes = maxShapes;
+		drawer.startTime = startTime;
+		drawer.expanded = expanded;
+		drawer.retainShapes = true;
+		drawer.finishedShapes = finishedShapes;
+		return drawer;
+	}
+
 	public void draw(CFCanvas canvas) {
+		if (canvas != null) {
+			canvas.clear(cfdg.getBackgroundColor());
+		}
 		frameTimeBounds = AffineTransformTime.getTranslateInstance(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
 		outputPrep(canvas);
 		outputFinal();
 		outputStats();
 	}
 
+	// animate is part of the renderer API only: image composers and the export draw each frame with run and draw,
+	// therefore the shapes retained between frames don't reduce the time of exporting an animation yet
 	public void animate(CFCanvas canvas, int frames, int frame, boolean zoom) {
 		if (canvas != null) {
 			canvas.clear(cfdg.getBackgroundColor());
@@ -643,9 +696,21 @@ public class CFDGRenderer {
 
 		zoom = zoom && !ftime;
 
-		if (!ftime) {
+		if (!ftime && !expanded) {
+			// the design doesn't depend on the frame time, therefore we expand it once and each frame
+			// draws the retained shapes which are active at the frame time
 			cfdg.getSystem().info("Precomputing time/space bounds", null);
-			cleanup();
+			final boolean retain = retainShapes;
+			retainShapes = true;
+			try {
+				run(null, false);
+			} finally {
+				retainShapes = retain;
+			}
+			if (requestStop) {
+				return;
+			}
+			expanded = true;
 		}
 
 		final int[] currWidth = new int[] { width };
@@ -656,30 +721,37 @@ public class CFDGRenderer {
 
 		final double framInc = (timeBounds.getEnd() - timeBounds.getBegin()) / frames;
 
-		final OutputBounds outputBounds = new OutputBounds(frames, timeBounds, currWidth[0], currHeight[0], this);
+		if (animationBounds == null || !animationBounds.matches(frames, currWidth[0], currHeight[0])) {
+			animationBounds = new OutputBounds(frames, timeBounds, currWidth[0], currHeight[0], this);
 
-		if (!ftime) {
-			cfdg.getSystem().info("Computing zoom", null);
+			if (!ftime) {
+				cfdg.getSystem().info("Computing zoom", null);
 
-			try {
-				forEachShape(outputBounds::apply);
-				outputSoFar = 0;
-				outputBounds.backwardFilter(10);
-			} catch (CFDGStopException e) {
-				log.log(Level.INFO, "Stop rendering...", e);
-				animating = false;
-				return;
-			} catch (CFDGException e) {
-				log.log(Level.WARNING, "Can't render CFDG image", e);
-				cfdg.getSystem().error(e.getMessage(), e.getWhere());
-				return;
-			} catch (Exception e) {
-				log.log(Level.SEVERE, "Can't render CFDG image", e);
-				cfdg.getSystem().error(e.getMessage(), null);
-				return;
+				try {
+					forEachShape(animationBounds::apply);
+					outputSoFar = 0;
+					animationBounds.backwardFilter(10);
+				} catch (CFDGStopException e) {
+					log.log(Level.INFO, "Stop rendering...", e);
+					animationBounds = null;
+					animating = false;
+					return;
+				} catch (CFDGException e) {
+					log.log(Level.WARNING, "Can't render CFDG image", e);
+					cfdg.getSystem().error(e.getMessage(), e.getWhere());
+					animationBounds = null;
+					return;
+				} catch (Exception e) {
+					log.log(Level.SEVERE, "Can't render CFDG image", e);
+					cfdg.getSystem().error(e.getMessage(), null);
+					animationBounds = null;
+					return;
+				}
 			}
 		}
 
+		final OutputBounds outputBounds = animationBounds;
+
 		shapeCount = 0;
 		animating = true;
 
@@ -744,7 +816,188 @@ public class CFDGRenderer {
 		}
 	}
 
+	private void expandSequentially(boolean partialDraw) {
+		int reportAt = 250;
+		long reportTime = startTime + REPORT_INTERVAL;
+
+		// Shapes are expanded one at a time by default. Each shape depends on the shapes finished before it:
+		// small shapes are culled using the scale computed from the bounds so far, sequence numbers come from
+		// shapeCount, and time begins at totalArea.
+		for (;;) {
+			if (requestStop) {
+				break;
+			}
+
+			if (requestFinishUp) {
+				break;
+			}
+
+			if (unfinishedShapes.isEmpty()) {
+				break;
+			}
+
+			if (shapeCount + todoCount > maxShapes) {
+				break;
+			}
+
+			// The queue holds the only reference to the shape, therefore we don't need to clone it
+			final Shape shape = unfinishedShapes.poll();
+
+			todoCount -= 1;
+
+			try {
+				final ASTRule rule = cfdg.findRule(shape.getShapeType(), shape.getWorldState().getRand64Seed().getDouble());
+				drawingMode = false;
+				rule.traverseRule(builder, this, shape, false);
+			} catch (Exception e) {
+				expansionFailed(e);
+				break;
+			}
+
+			if (requestUpdate || shapeCount > reportAt || System.currentTimeMillis() > reportTime) {
+				if (partialDraw) {
+					outputPartial();
+				}
+				outputStats();
+				reportAt = 2 * shapeCount;
+				reportTime = System.currentTimeMillis() + REPORT_INTERVAL;
+			}
+
+			Thread.yield();
+		}
+	}
+
+	// Shapes are expanded in batches by a work-stealing pool. Each worker traverses the rules with its own
+	// renderer and it only records the shapes produced by each rule, in the order of production. The owner
+	// processes the recorded shapes in the order of the batch, which is the order of the sequential expansion,
+	// therefore sequence numbers, culling, scale and time are the same as in the sequential expansion.
+	private void expandConcurrently(boolean partialDraw) {
+		final ExecutorService executor = ExecutorUtils.newWorkStealingPool(expansionWorkers);
+		final ThreadLocal<CFDGRenderer> workers = ThreadLocal.withInitial(this::createWorker);
+		final List<Callable<ExpansionResult>> tasks = new ArrayList<>();
+
+		int reportAt = 250;
+		long reportTime = startTime + REPORT_INTERVAL;
+		boolean stopped = false;
+
+		try {
+			while (!stopped && !requestStop && !requestFinishUp && !unfinishedShapes.isEmpty() && shapeCount + todoCount <= maxShapes) {
+				tasks.clear();
+
+				// the shapes remain pending until they are merged, like in the sequential expansion
+				for (Shape shape : unfinishedShapes) {
+					if (tasks.size() == EXPANSION_BATCH_SIZE) {
+						break;
+					}
+					tasks.add(() -> workers.get().traverseShape(shape));
+				}
+
+				for (Future<ExpansionResult> future : executor.invokeAll(tasks)) {
+					if (requestStop || requestFinishUp || shapeCount + todoCount > maxShapes) {
+						stopped = true;
+						break;
+					}
+					unfinishedShapes.poll();
+					todoCount -= 1;
+					if (!mergeShapes(future.get())) {
+						stopped = true;
+						break;
+					}
+				}
+
+				if (requestUpdate || shapeCount > reportAt || System.currentTimeMillis() > reportTime) {
+					if (partialDraw) {
+						outputPartial();
+					}
+					outputStats();
+					reportAt = 2 * shapeCount;
+					reportTime = System.currentTimeMillis() + REPORT_INTERVAL;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			requestStop = true;
+		} catch (ExecutionException e) {
+			log.log(Level.SEVERE, "Can't render CFDG image", e.getCause());
+			requestStop = true;
+			cfdg.getSystem().fail(e.getCause().getMessage());
+		} finally {
+			ExecutorUtils.shutdown(executor);
+		}
+	}
+
+	private CFDGRenderer createWorker() {
+		final CFDGRenderer worker = new CFDGRenderer(builder, width, height, minSize, variation, border);
+		worker.setImpure(impure);
+		worker.currentTime = currentTime;
+		worker.currentFrame = currentFrame;
+		worker.init();
+		worker.tiled = tiled;
+		worker.sized = sized;
+		worker.frieze = frieze;
+		return worker;
+	}
+
+	// this method is executed by a worker, and it must not change the state of the owner. The worker
+	// keeps the exception instead of reporting it, so that the owner reports it after the recorded shapes
+	private ExpansionResult traverseShape(Shape shape) {
+		final ExpansionResult result = new ExpansionResult();
+		expansionResult = result;
+		try {
+			final ASTRule rule = cfdg.findRule(shape.getShapeType(), shape.getWorldState().getRand64Seed().getDouble());
+			drawingMode = false;
+			rule.traverseRule(builder, this, shape, false);
+		} catch (Exception e) {
+			result.exception = e;
+		} finally {
+			expansionResult = null;
+		}
+		return result;
+	}
+
+	private boolean mergeShapes(ExpansionResult result) {
+		try {
+			for (ExpandedShape expandedShape : result.shapes) {
+				if (expandedShape.primitive()) {
+					processPrimShape(expandedShape.shape(), expandedShape.path());
+				} else {
+					processShape(expandedShape.shape());
+				}
+			}
+		} catch (Exception e) {
+			expansionFailed(e);
+			return false;
+		}
+		if (result.exception != null) {
+			expansionFailed(result.exception);
+			return false;
+		}
+		return true;
+	}
+
+	private void expansionFailed(Exception e) {
+		switch (e) {
+			case CFDGDeferUntilRuntimeException _, CFDGStopException _ -> log.log(Level.INFO, "Stop rendering...", e);
+			case CFDGException cfdgException -> {
+				log.log(Level.WARNING, "Can't render CFDG image", e);
+				requestStop = true;
+				cfdg.getSystem().error(cfdgException.getMessage(), cfdgException.getWhere());
+			}
+			default -> {
+				log.log(Level.SEVERE, "Can't render CFDG image", e);
+				requestStop = true;
+				cfdg.getSystem().fail(e.getMessage());
+			}
+		}
+	}
+
 	public void processShape(Shape shape) {
+		if (expansionResult != null) {
+			// the owner processes the shape when it merges the results in order
+			expansionResult.shapes.add(new ExpandedShape(shape, null, false));
+			return;
+		}
+
 		double area = shape.getAreaCache();
 		if (!Double.isFinite(area)) {
 			requestStop = true;
@@ -773,6 +1026,11 @@ public class CFDGRenderer {
 	}
 
 	public void processPrimShape(Shape shape, ASTRule rule) {
+		if (expansionResult != null) {
+			expansionResult.shapes.add(new ExpandedShape(shape, rule, true));
+			return;
+		}
+
 		if (symmetryOps.isEmpty() || shape.getShapeType() == PrimShapeType.fillType.getType()) {
 			processPrimShapeSiblings(shape, rule);
 		} else {
@@ -791,7 +1049,9 @@ public class CFDGRenderer {
 			scale = (width + height) / Math.sqrt(Math.abs(shape.getWorldState().getTransform().getDeterminant()));
 		}
 
-		if (path != null || shape.getShapeType() != PrimShapeType.fillType.getType()) {
+		final boolean measured = path != null || shape.getShapeType() != PrimShapeType.fillType.getType();
+
+		if (measured) {
 			currentArea = 0.0;
 			pathBounds.invalidate();
 			drawingMode = false;
@@ -810,11 +1070,19 @@ public class CFDGRenderer {
 			// something weird happened while determining its bounds
 			if (!pathBounds.valid() || (sized && !pathBounds.overlaps(bounds)))
 				return;
+		} else {
+			currentArea = 1.0;
+		}
+
+		finishShape(shape, pathBounds, currentArea, measured);
+	}
 
-			totalArea += currentArea;
+	private void finishShape(Shape shape, Bounds shapeBounds, double shapeArea, boolean measured) {
+		if (measured) {
+			totalArea += shapeArea;
 
 			if (!tiled && !sized) {
-				bounds.merge(pathBounds.dilate(shapeBorder));
+				bounds.merge(shapeBounds.dilate(shapeBorder));
 				if (frieze == FriezeType.FriezeX) {
 					bounds.setMinX(-friezeSize);
 					bounds.setMaxX(+friezeSize);
@@ -831,14 +1099,12 @@ public class CFDGRenderer {
 				height = currHeight[0];
 				scaleArea = scale * scale;
 			}
-		} else {
-			currentArea = 1.0;
 		}
 
 		shapeCount += 1;
 
-		final FinishedShape finishedShape = new FinishedShape((Shape)shape.clone(), shapeCount, new Bounds(pathBounds));
-		finishedShape.getWorldState().getTransformZ().setSz(currentArea);
+		final FinishedShape finishedShape = new FinishedShape(shape, shapeCount, new Bounds(shapeBounds));
+		finishedShape.getWorldState().getTransformZ().setSz(shapeArea);
 
 		if (!cfdg.usesTime()) {
 			finishedShape.getWorldState().getTransformTime().setBegin(totalArea);
@@ -929,20 +1195,20 @@ public class CFDGRenderer {
 	}
 
 	private void forEachShape(Consumer<FinishedShape> shapeFunction) {
-		int shapeIdx = 0;
-		int drawAt = DRAW_AT;
-		for (FinishedShape shape : finishedShapes) {
+		final int[] shapeIdx = new int[] { 0 };
+		final int[] drawAt = new int[] { DRAW_AT };
+		finishedShapes.forEach(frameTimeBounds, shape -> {
 			shapeFunction.accept(shape);
-			shapeIdx += 1;
-			if (shapeIdx == drawAt) {
+			shapeIdx[0] += 1;
+			if (shapeIdx[0] == drawAt[0]) {
 				notifyDraw();
-				drawAt *= 2;
+				drawAt[0] *= 2;
 			}
-			if (shapeIdx % 100 == 0) {
+			if (shapeIdx[0] % 100 == 0) {
 				Thread.yield();
 			}
-		}
-		outputSoFar += finishedShapes.size();
+		});
+		outputSoFar += finishedShapes.getSize();
 	}
 
 	private void drawShape(FinishedShape shape) {
@@ -962,9 +1228,6 @@ public class CFDGRenderer {
 			return;
 		}
 
-		final AffineTransform transform = shape.getWorldState().getTransform();
-		transform.preConcatenate(currTransform);
-
 		final double a = shape.getWorldState().getTransformZ().getSz() * currArea;
 
 		if (shape.getShapeType() != PrimShapeType.fillType.getType() && (!Double.isFinite(a) || a < minArea)) {
@@ -982,11 +1245,28 @@ public class CFDGRenderer {
 			b.setMaxX(p2.getX());
 			b.setMaxY(p2.getY());
 			tiledCanvas.tileTransform(b);
+		} else if (shape.getShapeType() != PrimShapeType.fillType.getType() && shape.bounds().valid()) {
+			final Bounds b = shape.bounds();
+			final Point2D.Double p1 = new Point2D.Double(b.getMinX(), b.getMinY());
+			final Point2D.Double p2 = new Point2D.Double(b.getMaxX(), b.getMaxY());
+			currTransform.transform(p1, p1);
+			currTransform.transform(p2, p2);
+			// skip shapes which don't touch the area covered by the canvas, like shapes outside of a tile
+			if (!canvas.isVisible(Math.min(p1.getX(), p2.getX()), Math.min(p1.getY(), p2.getY()), Math.max(p1.getX(), p2.getX()), Math.max(p1.getY(), p2.getY()))) {
+				return;
+			}
 		}
 
+		// shapes drawn by partial output, retained for later draws, or drawn in more frames are drawn again, therefore we must not modify them.
+		// the shape is copied after culling, because most shapes are outside of the canvas when the canvas is a tile
+		final Shape target = finalStep && !retainShapes && !animating ? shape : new Shape(shape);
+
+		final AffineTransform transform = target.getWorldState().getTransform();
+		transform.preConcatenate(currTransform);
+
 		if (cfdg.getShapeType(shape.getShapeType()) == ShapeType.PathType) {
 			final ASTRule rule = cfdg.findRule(shape.getShapeType());
-			rule.traversePath(builder, this, shape);
+			rule.traversePath(builder, this, target);
 		} else {
 			final double[] color = shape.getWorldState().color().getRGBA();
 			//TODO implement blend
@@ -1054,12 +1334,18 @@ public class CFDGRenderer {
 		rescaleOutput(currWidth, currHeight, true);
 
 		final long time = System.currentTimeMillis();
-		Collections.sort(finishedShapes);
+		finishedShapes.sort();
 		final long totalTime = System.currentTimeMillis() - time;
-		cfdg.getSystem().info("Sorting of " + finishedShapes.size() + " shapes took " + totalTime / 1000.0 + "s", null);
+		cfdg.getSystem().info("Sorting of " + finishedShapes.getSize() + " shapes took " + totalTime / 1000.0 + "s", null);
 
 		canvas.start(outputSoFar == 0, cfdg.getBackgroundColor(), currWidth[0], currHeight[0]);
 
+		if (partialDrawn) {
+			// remove partial output, since shapes might have been drawn in a different order
+			canvas.clear(cfdg.getBackgroundColor());
+			partialDrawn = false;
+		}
+
 		drawingMode = true;
 
 		drawFinishedShapes();
@@ -1074,7 +1360,7 @@ public class CFDGRenderer {
 			final long time = System.currentTimeMillis();
 			forEachShape(this::drawShape);
 			final long totalTime = System.currentTimeMillis() - time;
-			cfdg.getSystem().info("Drawing of " + finishedShapes.size() + " shapes took " + totalTime / 1000.0 + "s", null);
+			cfdg.getSystem().info("Drawing of " + finishedShapes.getSize() + " shapes took " + totalTime / 1000.0 + "s", null);
 		} catch (CFDGStopException e) {
 			log.log(Level.INFO, "Stop rendering...", e);
 		} catch (CFDGException e) {
@@ -1095,19 +1381,106 @@ public class CFDGRenderer {
 
 	private void outputFinal() {
 		output(true);
+		if (!requestStop) {
+			progress = 1;
+		}
 	}
 
 	private void outputPartial() {
-		output(false);
+		if (canvas == null || !partialOutput) {
+			return;
+		}
+
+		final int[] currWidth = new int[] { width };
+		final int[] currHeight = new int[] { height };
+		rescaleOutput(currWidth, currHeight, false);
+
+		if (!bounds.valid()) {
+			finishedShapes.skipAdded();
+			return;
+		}
+
+		final long time = System.currentTimeMillis();
+
+		if (outputSoFar == 0 && time - fullRedrawTime < FULL_REDRAW_INTERVAL_RATIO * fullRedrawDuration) {
+			// the previous output remains visible until the next full redraw
+			return;
+		}
+
+		try {
+			canvas.start(outputSoFar == 0, cfdg.getBackgroundColor(), currWidth[0], currHeight[0]);
+
+			drawingMode = true;
+
+			if (outputSoFar == 0) {
+				// the scale has changed, therefore we have to draw all shapes again
+				canvas.clear(cfdg.getBackgroundColor());
+				partialZ = Double.NEGATIVE_INFINITY;
+				finishedShapes.sort();
+				finishedShapes.forEach(this::drawPartialShape);
+				finishedShapes.skipAdded();
+				outputSoFar = finishedShapes.getSize();
+				fullRedrawTime = System.currentTimeMillis();
+				fullRedrawDuration = fullRedrawTime - time;
+			} else if (finishedShapes.forEachAdded(this::drawPartialShape)) {
+				outputSoFar = finishedShapes.getSize();
+			} else {
+				// some shapes were spilled before they were drawn, therefore we have to draw all shapes again
+				outputSoFar = 0;
+			}
+
+			canvas.flush();
+
+			partialDrawn = true;
+		} catch (CFDGStopException e) {
+			log.log(Level.INFO, "Stop rendering...", e);
+		} catch (CFDGException e) {
+			log.log(Level.WARNING, "Can't render CFDG image", e);
+			cfdg.getSystem().error(e.getMessage(), e.getWhere());
+		} catch (Exception e) {
+			log.log(Level.SEVERE, "Can't render CFDG image", e);
+			cfdg.getSystem().fail(e.getMessage());
+		} finally {
+			drawingMode = false;
+		}
+
+		notifyDraw();
+	}
+
+	private void drawPartialShape(FinishedShape shape) {
+		// shapes are drawn in order of sequence number, which is the final order only
+		// when z doesn't decrease, therefore shapes below drawn shapes wait for final output
+		final double z = shape.getWorldState().getTransformZ().getTz();
+		if (z < partialZ) {
+			return;
+		}
+		partialZ = z;
+		drawShape(shape);
 	}
 
 	private void outputStats() {
-		//TODO implement stats
 		requestUpdate = false;
+		final CFListener renderListener = getListener();
+		if (renderListener != null) {
+			final long elapsedTime = System.currentTimeMillis() - startTime;
+			if (progress < 1 && shapeCount + todoCount > 0) {
+				// the number of shapes is unknown until the expansion is complete, therefore this is only an estimate
+				progress = Math.max(progress, Math.min(shapeCount / (float) (shapeCount + todoCount), MAX_EXPANSION_PROGRESS));
+			}
+			renderListener.stats(new CFStats(shapeCount, todoCount, elapsedTime > 0 ? shapeCount * 1000.0 / elapsedTime : 0, progress));
+		}
 	}
 
 	public static boolean abortEverything() {
 		//TODO is abortEverything required?
 		return false;
 	}
+
+	// a shape produced by a rule, which the owner processes either as shape or as primitive shape
+	private record ExpandedShape(Shape shape, ASTRule path, boolean primitive) {}
+
+	private static class ExpansionResult {
+		private final List<ExpandedShape> shapes = new ArrayList<>();
+		private Exception exception;
+	}
 }
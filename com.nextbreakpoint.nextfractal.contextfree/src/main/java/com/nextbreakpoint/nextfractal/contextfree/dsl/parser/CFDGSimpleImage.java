@@ -28,6 +28,7 @@ import com.nextbreakpoint.nextfractal.contextfree.dsl.CFCanvas;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFDGImage;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFListener;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFRenderer;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFStats;
 import com.nextbreakpoint.nextfractal.core.common.ScriptError;
 import lombok.Setter;
 
@@ -57,7 +58,19 @@ public class CFDGSimpleImage implements CFDGImage {
         public DefaultRenderer(CFDG cfdg, CFDGRenderer renderer) {
             this.renderer = renderer;
             this.cfdg = cfdg;
-            renderer.setListener(this::draw);
+            renderer.setListener(new CFListener() {
+                @Override
+                public void draw() {
+                    DefaultRenderer.this.draw();
+                }
+
+                @Override
+                public void stats(CFStats stats) {
+                    if (listener != null) {
+                        listener.stats(stats);
+                    }
+                }
+            });
         }
 
         @Override
@@ -67,6 +80,32 @@ public class CFDGSimpleImage implements CFDGImage {
             }
         }
 
+        @Override
+        public void draw(CFCanvas canvas) {
+            if (renderer != null) {
+                renderer.draw(canvas);
+            }
+        }
+
+        @Override
+        public void setRetainShapes(boolean retainShapes) {
+            if (renderer != null) {
+                renderer.setRetainShapes(retainShapes);
+            }
+        }
+
+        @Override
+        public void releaseShapes() {
+            if (renderer != null) {
+                renderer.releaseShapes();
+            }
+        }
+
+        @Override
+        public CFRenderer createDrawer() {
+            return renderer != null ? new DefaultRenderer(cfdg, renderer.createDrawer()) : this;
+        }
+
         @Override
         public void stop() {
             if (renderer != null) {
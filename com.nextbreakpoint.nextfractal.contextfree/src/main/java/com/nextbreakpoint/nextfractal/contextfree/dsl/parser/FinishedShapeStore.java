@@ -0,0 +1,459 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.contextfree.dsl.parser;
+
+import com.nextbreakpoint.nextfractal.contextfree.core.AffineTransformTime;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast.ASTParameter;
+import lombok.Getter;
+
+import java.awt.geom.AffineTransform;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Holds the finished shapes of a design. Shapes are kept in memory until the memory limit in bytes is reached,
+ * then they are sorted and written to a temporary run file, together with their parameters.
+ * Runs are merged when the shapes are visited. Shapes kept in memory are indexed by time in blocks,
+ * so that the shapes of a frame can be visited without testing every shape.
+ */
+public class FinishedShapeStore {
+	private static final int TIME_BLOCK_SIZE = 1024;
+	// estimated size of a shape with its world state and bounds, and of the parameters of a path
+	private static final int SHAPE_BYTES = 400;
+	private static final int RULE_BYTES = 80;
+	private static final int PARAMETER_BYTES = 90;
+
+	private static final byte ITEM_NONE = 0;
+	private static final byte ITEM_NUMBER = 1;
+	private static final byte ITEM_MODIFICATION = 2;
+	private static final byte ITEM_RULE = 3;
+
+	private final List<FinishedShape> shapes = new ArrayList<>();
+	private final List<Run> runs = new ArrayList<>();
+	// declarations of parameters are shared by many shapes, therefore we store each of them once
+	private final List<List<ASTParameter>> declarations = new ArrayList<>();
+	private final Map<List<ASTParameter>, Integer> declarationIndexes = new HashMap<>();
+	private final long memoryLimit;
+	private long memoryUsage;
+	@Getter
+	private int size;
+	private boolean sorted = true;
+	// index of the first shape in memory which hasn't been visited by forEachAdded
+	private int addedIndex;
+	// true when some shapes were sorted or spilled before forEachAdded visited them
+	private boolean addedSkipped;
+	// minimum begin time and maximum end time of each block of sorted shapes
+	private double[] blockBegins;
+	private double[] blockEnds;
+
+	public FinishedShapeStore(long memoryLimit) {
+		this.memoryLimit = Math.max(1, memoryLimit);
+	}
+
+	public void add(FinishedShape shape) {
+		shapes.add(shape);
+		size += 1;
+		memoryUsage += estimateBytes(shape);
+		sorted = false;
+		blockBegins = null;
+		blockEnds = null;
+		if (memoryUsage >= memoryLimit) {
+			spill();
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void sort() {
+		if (!sorted) {
+			Collections.sort(shapes);
+			sorted = true;
+			addedSkipped |= addedIndex < shapes.size();
+			addedIndex = shapes.size();
+		}
+	}
+
+	// visits the shapes added since the previous visit in order of addition, without reading the runs,
+	// and it returns false when some of them were sorted or spilled before they could be visited
+	public boolean forEachAdded(Consumer<FinishedShape> consumer) {
+		for (int i = addedIndex; i < shapes.size(); i++) {
+			consumer.accept(shapes.get(i));
+		}
+		addedIndex = shapes.size();
+		final boolean complete = !addedSkipped;
+		addedSkipped = false;
+		return complete;
+	}
+
+	// the shapes added so far are considered visited, for example after visiting all shapes
+	public void skipAdded() {
+		addedIndex = shapes.size();
+		addedSkipped = false;
+	}
+
+	// the shapes can be visited by more threads after prepare, until a shape is added
+	public void prepare() {
+		sort();
+		if (blockBegins == null && runs.isEmpty()) {
+			buildTimeIndex();
+		}
+	}
+
+	public void forEach(Consumer<FinishedShape> consumer) {
+		// the runs are sorted, therefore the shapes in memory must be sorted before merging
+		sort();
+		if (runs.isEmpty()) {
+			shapes.forEach(consumer);
+			return;
+		}
+		final List<RunReader> readers = new ArrayList<>();
+		try {
+			final PriorityQueue<RunReader> queue = new PriorityQueue<>();
+			for (Run run : runs) {
+				readers.add(new RunReader(run));
+			}
+			readers.add(new RunReader(shapes.iterator()));
+			for (RunReader reader : readers) {
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			while (!queue.isEmpty()) {
+				final RunReader reader = queue.poll();
+				consumer.accept(reader.current);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+		} finally {
+			readers.forEach(RunReader::close);
+		}
+	}
+
+	public void forEach(AffineTransformTime timeBounds, Consumer<FinishedShape> consumer) {
+		if (!runs.isEmpty()) {
+			forEach(shape -> {
+				if (shape.getWorldState().getTransformTime().overlaps(timeBounds)) {
+					consumer.accept(shape);
+				}
+			});
+			return;
+		}
+		sort();
+		if (blockBegins == null) {
+			buildTimeIndex();
+		}
+		for (int block = 0; block < blockBegins.length; block++) {
+			if (timeBounds.getBegin() > blockEnds[block] || timeBounds.getEnd() < blockBegins[block]) {
+				continue;
+			}
+			final int last = Math.min(shapes.size(), (block + 1) * TIME_BLOCK_SIZE);
+			for (int i = block * TIME_BLOCK_SIZE; i < last; i++) {
+				final FinishedShape shape = shapes.get(i);
+				if (shape.getWorldState().getTransformTime().overlaps(timeBounds)) {
+					consumer.accept(shape);
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		sorted = true;
+		addedIndex = 0;
+		addedSkipped = false;
+		blockBegins = null;
+		blockEnds = null;
+		shapes.clear();
+		declarations.clear();
+		declarationIndexes.clear();
+		runs.forEach(Run::delete);
+		runs.clear();
+		memoryUsage = 0;
+		size = 0;
+	}
+
+	private void buildTimeIndex() {
+		final int blocks = (shapes.size() + TIME_BLOCK_SIZE - 1) / TIME_BLOCK_SIZE;
+		blockBegins = new double[blocks];
+		blockEnds = new double[blocks];
+		for (int block = 0; block < blocks; block++) {
+			double begin = Double.POSITIVE_INFINITY;
+			double end = Double.NEGATIVE_INFINITY;
+			final int last = Math.min(shapes.size(), (block + 1) * TIME_BLOCK_SIZE);
+			for (int i = block * TIME_BLOCK_SIZE; i < last; i++) {
+				final AffineTransformTime time = shapes.get(i).getWorldState().getTransformTime();
+				begin = Math.min(begin, time.getBegin());
+				end = Math.max(end, time.getEnd());
+			}
+			blockBegins[block] = begin;
+			blockEnds[block] = end;
+		}
+	}
+
+	private void spill() {
+		sort();
+		try {
+			final Path path = Files.createTempFile("cfdg-shapes-", ".run");
+			path.toFile().deleteOnExit();
+			try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 65536))) {
+				for (FinishedShape shape : shapes) {
+					writeShape(os, shape);
+				}
+			}
+			runs.add(new Run(path, shapes.size()));
+			shapes.clear();
+			addedIndex = 0;
+			memoryUsage = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't write shapes to temporary file", e);
+		}
+	}
+
+	private long estimateBytes(FinishedShape shape) {
+		final CFStackRule parameters = shape.getParameters();
+		return parameters != null ? SHAPE_BYTES + RULE_BYTES + (long) parameters.getParamCount() * PARAMETER_BYTES : SHAPE_BYTES;
+	}
+
+	private void writeShape(DataOutputStream os, FinishedShape shape) throws IOException {
+		os.writeInt(shape.getShapeType());
+		os.writeDouble(shape.getAreaCache());
+		// the color assignment of the world state holds the order of the shape
+		writeModification(os, shape.getWorldState());
+		os.writeDouble(shape.bounds().getMinX());
+		os.writeDouble(shape.bounds().getMinY());
+		os.writeDouble(shape.bounds().getMaxX());
+		os.writeDouble(shape.bounds().getMaxY());
+		if (shape.getParameters() != null) {
+			os.writeBoolean(true);
+			writeRule(os, shape.getParameters());
+		} else {
+			os.writeBoolean(false);
+		}
+	}
+
+	private FinishedShape readShape(DataInputStream is) throws IOException {
+		final Shape shape = new Shape();
+		shape.setShapeType(is.readInt());
+		shape.setAreaCache(is.readDouble());
+		readModification(is, shape.getWorldState());
+		final Bounds bounds = new Bounds(is.readDouble(), is.readDouble(), is.readDouble(), is.readDouble());
+		shape.setParameters(is.readBoolean() ? readRule(is) : null);
+		return new FinishedShape(shape, shape.getWorldState().colorAssignment(), bounds);
+	}
+
+	private void writeModification(DataOutputStream os, Modification modification) throws IOException {
+		final double[] matrix = new double[6];
+		modification.getTransform().getMatrix(matrix);
+		os.writeLong(modification.getRand64Seed().getSeed());
+		for (double value : matrix) {
+			os.writeDouble(value);
+		}
+		os.writeDouble(modification.getTransformZ().getSz());
+		os.writeDouble(modification.getTransformZ().getTz());
+		os.writeDouble(modification.getTransformTime().getStep());
+		os.writeDouble(modification.getTransformTime().getBegin());
+		os.writeDouble(modification.getTransformTime().getEnd());
+		os.writeLong(modification.getBlendMode());
+		writeColor(os, modification.color());
+		writeColor(os, modification.colorTarget());
+		os.writeInt(modification.colorAssignment());
+	}
+
+	private void readModification(DataInputStream is, Modification modification) throws IOException {
+		modification.getRand64Seed().setSeed(is.readLong());
+		final double[] matrix = new double[6];
+		for (int i = 0; i < matrix.length; i++) {
+			matrix[i] = is.readDouble();
+		}
+		modification.setTransform(new AffineTransform(matrix));
+		modification.getTransformZ().setSz(is.readDouble());
+		modification.getTransformZ().setTz(is.readDouble());
+		modification.getTransformTime().setStep(is.readDouble());
+		modification.getTransformTime().setBegin(is.readDouble());
+		modification.getTransformTime().setEnd(is.readDouble());
+		modification.setBlendMode(is.readLong());
+		modification.setColor(readColor(is));
+		modification.setColorTarget(readColor(is));
+		modification.setColorAssignment(is.readInt());
+	}
+
+	private void writeRule(DataOutputStream os, CFStackRule rule) throws IOException {
+		final CFStack stack = rule.getStack();
+		os.writeInt(rule.getRuleName());
+		os.writeInt(rule.getParamCount());
+		os.writeInt(rule.getParams() != null ? declarationIndex(rule.getParams()) : -1);
+		os.writeInt(stack.getStackSize());
+		os.writeInt(stack.getStackTop());
+		os.writeInt(stack.getMaxStackSize());
+		for (int i = 0; i < stack.getMaxStackSize(); i++) {
+			switch (stack.getStackItem(i)) {
+				case CFStackNumber number -> {
+					os.writeByte(ITEM_NUMBER);
+					os.writeDouble(number.getNumber());
+				}
+				case CFStackModification modification -> {
+					os.writeByte(ITEM_MODIFICATION);
+					writeModification(os, modification.getModification());
+				}
+				case CFStackRule item -> {
+					os.writeByte(ITEM_RULE);
+					writeRule(os, item);
+				}
+				case null, default -> os.writeByte(ITEM_NONE);
+			}
+		}
+	}
+
+	private CFStackRule readRule(DataInputStream is) throws IOException {
+		final int ruleName = is.readInt();
+		final int paramCount = is.readInt();
+		final int declarationIndex = is.readInt();
+		final int stackSize = is.readInt();
+		final int stackTop = is.readInt();
+		final CFStack stack = new CFStack(new CFStackItem[is.readInt()]);
+		for (int i = 0; i < stack.getMaxStackSize(); i++) {
+			final CFStackItem item = switch (is.readByte()) {
+				case ITEM_NUMBER -> new CFStackNumber(stack, is.readDouble());
+				case ITEM_MODIFICATION -> {
+					final Modification modification = new Modification();
+					readModification(is, modification);
+					yield new CFStackModification(stack, modification);
+				}
+				case ITEM_RULE -> readRule(is);
+				default -> null;
+			};
+			stack.setStackItem(i, item);
+		}
+		stack.setStackSize(stackSize);
+		stack.setStackTop(stackTop);
+		final CFStackRule rule = new CFStackRule(stack, ruleName, paramCount);
+		rule.setParams(declarationIndex != -1 ? declarations.get(declarationIndex) : null);
+		return rule;
+	}
+
+	private int declarationIndex(List<ASTParameter> params) {
+		final Integer index = declarationIndexes.get(params);
+		if (index != null) {
+			return index;
+		}
+		declarations.add(params);
+		declarationIndexes.put(params, declarations.size() - 1);
+		return declarations.size() - 1;
+	}
+
+	private void writeColor(DataOutputStream os, HSBColor color) throws IOException {
+		os.writeDouble(color.hue());
+		os.writeDouble(color.sat());
+		os.writeDouble(color.bright());
+		os.writeDouble(color.alpha());
+	}
+
+	private HSBColor readColor(DataInputStream is) throws IOException {
+		return new HSBColor(is.readDouble(), is.readDouble(), is.readDouble(), is.readDouble());
+	}
+
+	private record Run(Path path, int count) {
+		public void delete() {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				path.toFile().deleteOnExit();
+			}
+		}
+	}
+
+	private class RunReader implements Comparable<RunReader> {
+		private final Iterator<FinishedShape> iterator;
+		private final DataInputStream is;
+		private int remaining;
+		private FinishedShape current;
+
+		public RunReader(Run run) {
+			try {
+				this.is = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path()), 65536));
+				this.remaining = run.count();
+				this.iterator = null;
+			} catch (IOException e) {
+				throw new UncheckedIOException("Can't read shapes from temporary file", e);
+			}
+		}
+
+		public RunReader(Iterator<FinishedShape> iterator) {
+			this.iterator = iterator;
+			this.is = null;
+		}
+
+		public boolean next() {
+			if (iterator != null) {
+				current = iterator.hasNext() ? iterator.next() : null;
+				return current != null;
+			}
+			if (remaining == 0) {
+				current = null;
+				return false;
+			}
+			try {
+				current = readShape(is);
+				remaining -= 1;
+				return true;
+			} catch (EOFException e) {
+				throw new UncheckedIOException("Unexpected end of temporary file", e);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Can't read shapes from temporary file", e);
+			}
+		}
+
+		public void close() {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException _) {
+				}
+			}
+		}
+
+		@Override
+		public int compareTo(RunReader other) {
+			return current.compareTo(other.current);
+		}
+	}
+}
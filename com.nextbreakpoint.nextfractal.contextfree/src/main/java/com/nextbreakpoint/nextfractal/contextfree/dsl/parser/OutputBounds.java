@@ -77,7 +77,7 @@ public class OutputBounds {
         frameBounds = new Bounds[frames];
         frameCounts = new Integer[frames];
 
-        IntStream.range(0, frames).forEach(i -> frameBounds[i] = null);
+        IntStream.range(0, frames).forEach(i -> frameBounds[i] = new Bounds());
         IntStream.range(0, frames).forEach(i -> frameCounts[i] = 0);
     }
 
@@ -92,7 +92,8 @@ public class OutputBounds {
             scale = (width + height) / Math.sqrt(Math.abs(shape.getWorldState().getTransform().getDeterminant()));
         }
 
-        final AffineTransformTime frameTime = shape.getWorldState().getTransformTime();
+        // the shape is drawn later, therefore we must not modify its time
+        final AffineTransformTime frameTime = (AffineTransformTime) shape.getWorldState().getTransformTime().clone();
         frameTime.translate(-timeBounds.getBegin());
         frameTime.scale(frameScale);
 
@@ -106,6 +107,10 @@ public class OutputBounds {
         frameCounts[begin] += 1;
     }
 
+    public boolean matches(int frames, int width, int height) {
+        return this.frames == frames && this.width == width && this.height == height;
+    }
+
     public void finalAccumulate() {
     }
 
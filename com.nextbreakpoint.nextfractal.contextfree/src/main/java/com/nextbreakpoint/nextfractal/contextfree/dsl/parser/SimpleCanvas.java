@@ -29,6 +29,7 @@ import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.FlagType;
 import com.nextbreakpoint.nextfractal.core.graphics.Point;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import com.nextbreakpoint.nextfractal.core.graphics.Tile;
+import lombok.Getter;
 import lombok.extern.java.Log;
 
 import java.awt.BasicStroke;
@@ -41,14 +42,26 @@ import java.util.logging.Level;
 
 @Log
 public class SimpleCanvas implements CFCanvas {
+    private static final int COLOR_CACHE_SIZE = 4096;
+    private static final double VISIBILITY_MARGIN = 2.0;
+
+    // direct-mapped cache indexed by the hash of the ARGB value, so that colors are not boxed
+    private final Color[] colors = new Color[COLOR_CACHE_SIZE];
+    private final AffineTransform transform = new AffineTransform();
+    private final AffineTransform initialTransform;
     private final Graphics2D g2d;
     private final Tile tile;
     private final Size size;
+    @Getter
     private AffineTransform normTransform;
+    private BasicStroke stroke;
+    private int currentColor;
 
     public SimpleCanvas(Graphics2D g2d, Tile tile) {
         this.g2d = g2d;
         this.tile = tile;
+        initialTransform = g2d.getTransform();
+        currentColor = g2d.getColor() != null ? g2d.getColor().getRGB() : 0;
         final Size imageSize = tile.imageSize();
         final Size borderSize = tile.borderSize();
         final int width = imageSize.width() + borderSize.width() * 2;
@@ -68,46 +81,38 @@ public class SimpleCanvas implements CFCanvas {
 
     @Override
     public void primitive(int shapeType, double[] color, AffineTransform transform, int blend) {
-        try {
-            g2d.setColor(new Color((float) color[0], (float) color[1], (float) color[2], (float) color[3]));
-        } catch (IllegalArgumentException e) {
-            log.log(Level.WARNING, "Can't set color", e);
-        }
+        setColor(color);
 
         //TODO implement blend
 
-        final AffineTransform oldTransform = g2d.getTransform();
+        final PrimShape primShape = PrimShape.getShapeMap().get(shapeType);
+
+        if (primShape == null) {
+            throw new RuntimeException("Unexpected shape " + shapeType);
+        }
+
+        final AffineTransform t = this.transform;
 
-        final AffineTransform t = new AffineTransform(normTransform);
+        t.setTransform(normTransform);
 
         t.concatenate(transform);
 
         g2d.setTransform(t);
 
-        final PrimShape primShape = PrimShape.getShapeMap().get(shapeType);
-
-        if (primShape != null) {
-            g2d.fill(primShape.getPath());
-        } else {
-            throw new RuntimeException("Unexpected shape " + shapeType);
-        }
+        g2d.fill(primShape.getPath());
 
-        g2d.setTransform(oldTransform);
+        g2d.setTransform(initialTransform);
     }
 
     @Override
     public void path(double[] color, AffineTransform transform, GeneralPath path, long flags, double strokeWidth, double miterLimit, int blend) {
-        try {
-            g2d.setColor(new Color((float) color[0], (float) color[1], (float) color[2], (float) color[3]));
-        } catch (IllegalArgumentException e) {
-            log.log(Level.WARNING, "Can't set color", e);
-        }
+        setColor(color);
 
         //TODO implement blend
 
-        final AffineTransform oldTransform = g2d.getTransform();
+        final AffineTransform t = this.transform;
 
-        final AffineTransform t = new AffineTransform(normTransform);
+        t.setTransform(normTransform);
 
         java.awt.Shape shape = path;
 
@@ -124,11 +129,11 @@ public class SimpleCanvas implements CFCanvas {
             final int join = mapToJoin(flags);
             if ((flags & FlagType.CF_ISO_WIDTH.getMask()) != 0) {
                 final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
-                g2d.setStroke(new BasicStroke((float) (strokeWidth * scale), cap, join, (float) miterLimit));
+                setStroke((float) (strokeWidth * scale), cap, join, (float) miterLimit);
                 t.concatenate(transform);
             } else {
                 final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
-                g2d.setStroke(new BasicStroke((float) (strokeWidth * scale), cap, join, (float) miterLimit));
+                setStroke((float) (strokeWidth * scale), cap, join, (float) miterLimit);
                 shape = path.createTransformedShape(transform);
             }
         }
@@ -141,7 +146,35 @@ public class SimpleCanvas implements CFCanvas {
             g2d.draw(shape);
         }
 
-        g2d.setTransform(oldTransform);
+        g2d.setTransform(initialTransform);
+    }
+
+    private void setColor(double[] color) {
+        for (int i = 0; i < 4; i++) {
+            if (!(color[i] >= 0 && color[i] <= 1)) {
+                log.log(Level.WARNING, "Can't set color", new IllegalArgumentException("Color parameter outside of expected range"));
+                return;
+            }
+        }
+        final int argb = ((int) (color[3] * 255 + 0.5) << 24) | ((int) (color[0] * 255 + 0.5) << 16) | ((int) (color[1] * 255 + 0.5) << 8) | (int) (color[2] * 255 + 0.5);
+        if (argb == currentColor) {
+            return;
+        }
+        final int index = (argb * 0x9E3779B9 >>> 20) & (COLOR_CACHE_SIZE - 1);
+        Color cachedColor = colors[index];
+        if (cachedColor == null || cachedColor.getRGB() != argb) {
+            cachedColor = new Color(argb, true);
+            colors[index] = cachedColor;
+        }
+        g2d.setColor(cachedColor);
+        currentColor = argb;
+    }
+
+    private void setStroke(float width, int cap, int join, float miterLimit) {
+        if (stroke == null || stroke.getLineWidth() != width || stroke.getEndCap() != cap || stroke.getLineJoin() != join || stroke.getMiterLimit() != miterLimit) {
+            stroke = new BasicStroke(width, cap, join, miterLimit);
+        }
+        g2d.setStroke(stroke);
     }
 
     private int mapToJoin(long flags) {
@@ -178,20 +211,34 @@ public class SimpleCanvas implements CFCanvas {
         normTransform.translate(-(currWidth - imageSize.width()) / 2d, -(currHeight - imageSize.height()) / 2d);
     }
 
+    @Override
+    public boolean isVisible(double minX, double minY, double maxX, double maxY) {
+        if (normTransform == null) {
+            return true;
+        }
+        // normTransform is a translation, and the graphics covers the tile and its border
+        final double x = normTransform.getTranslateX();
+        final double y = normTransform.getTranslateY();
+        final double width = tile.tileSize().width() + tile.borderSize().width() * 2;
+        final double height = tile.tileSize().height() + tile.borderSize().height() * 2;
+        return maxX + x >= -VISIBILITY_MARGIN && minX + x <= width + VISIBILITY_MARGIN && maxY + y >= -VISIBILITY_MARGIN && minY + y <= height + VISIBILITY_MARGIN;
+    }
+
     @Override
     public void clear(double[] backgroundColor) {
         g2d.setColor(new Color((float)backgroundColor[0], (float)backgroundColor[1], (float)backgroundColor[2], (float)backgroundColor[3]));
+        currentColor = g2d.getColor().getRGB();
         g2d.fillRect(0, 0, getWidth(), getHeight());
     }
 
     @Override
     public void drawRect(double x, double y, double width, double height) {
         g2d.setColor(new Color(1, 1, 1, 0.9f));
-        final AffineTransform oldTransform = g2d.getTransform();
+        currentColor = g2d.getColor().getRGB();
         g2d.setTransform(normTransform);
         g2d.setStroke(new BasicStroke((float) 1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 2));
         g2d.draw(new Rectangle2D.Double(x, y, width, height));
-        g2d.setTransform(oldTransform);
+        g2d.setTransform(initialTransform);
     }
 
     @Override
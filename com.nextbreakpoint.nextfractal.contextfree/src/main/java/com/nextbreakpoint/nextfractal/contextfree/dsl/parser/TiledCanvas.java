@@ -67,6 +67,7 @@ public class TiledCanvas implements CFCanvas {
     private AffineTransform transformOffset;
     private final FriezeType frieze;
     private final CFCanvas canvas;
+    private final AffineTransform tileTransform = new AffineTransform();
     private int width;
     private int height;
 
@@ -96,7 +97,8 @@ public class TiledCanvas implements CFCanvas {
             return;
         }
         for (Point2D.Double tile : tileList) {
-            final AffineTransform t = AffineTransform.getTranslateInstance(tile.x, tile.y);
+            final AffineTransform t = tileTransform;
+            t.setToTranslation(tile.x, tile.y);
             t.concatenate(transform);
             canvas.primitive(shapeType, color, t, blend);
         }
@@ -105,7 +107,8 @@ public class TiledCanvas implements CFCanvas {
     @Override
     public void path(double[] color, AffineTransform transform, GeneralPath path, long flags, double strokeWidth, double miterLimit, int blend) {
         for (Point2D.Double tile : tileList) {
-            final AffineTransform t = AffineTransform.getTranslateInstance(tile.x, tile.y);
+            final AffineTransform t = tileTransform;
+            t.setToTranslation(tile.x, tile.y);
             t.concatenate(transform);
             canvas.path(color, t, path, flags, strokeWidth, miterLimit, blend);
         }
@@ -139,6 +142,11 @@ public class TiledCanvas implements CFCanvas {
         return canvas.hasError();
     }
 
+    @Override
+    public void flush() {
+        canvas.flush();
+    }
+
     public void setScale(double scale) {
         final AffineTransform t = AffineTransform.getScaleInstance(scale, scale);
 
@@ -0,0 +1,378 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast;
+
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.CFDGBuilder;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.CFDGRenderer;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.CFStackNumber;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.ExpType;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.nextbreakpoint.nextfractal.contextfree.dsl.parser.ast.AST.MAX_VECTOR_SIZE;
+
+/**
+ * Numeric expression of a rule body lowered to instructions, which are executed on an operand stack
+ * instead of walking the expression tree for each shape. Constant sub-expressions are folded by simplify
+ * before lowering, and parameters are loaded from the stack offsets resolved by the type check.
+ * Expressions which don't have an instruction are evaluated by the tree, and their values are pushed.
+ * The expression is evaluated by the tree when there is no renderer, like during compilation.
+ */
+@Getter
+public class ASTCompiledExpression extends ASTExpression {
+	private static final int CONST = 0;
+	private static final int LOAD = 1;
+	private static final int EVAL = 2;
+	private static final int FUNCTION = 3;
+	private static final int NEG = 4;
+	private static final int NOT = 5;
+	private static final int ADD = 6;
+	private static final int SUB = 7;
+	private static final int PSUB = 8;
+	private static final int MUL = 9;
+	private static final int DIV = 10;
+	private static final int LT = 11;
+	private static final int LE = 12;
+	private static final int GT = 13;
+	private static final int GE = 14;
+	private static final int EQ = 15;
+	private static final int NE = 16;
+	private static final int XOR = 17;
+	private static final int POW = 18;
+	private static final int POW_NATURAL = 19;
+	private static final int FLAG_OR = 20;
+	private static final int JUMP_IF_ZERO = 21;
+	private static final int JUMP_IF_NOT_ZERO = 22;
+
+	private final ASTExpression expression;
+	private final int[] code;
+	private final double[] values;
+	private final ASTExpression[] expressions;
+	private final int count;
+	private final int maxStackSize;
+
+	private ASTCompiledExpression(ASTExpression expression, Compiler compiler, int count) {
+		super(expression.getSystem(), expression.getWhere(), expression.isConstant(), expression.isNatural(), expression.getLocality(), expression.getType());
+		this.expression = expression;
+		this.code = Arrays.copyOf(compiler.code, compiler.codeSize);
+		this.values = Arrays.copyOf(compiler.values, compiler.valuesSize);
+		this.expressions = compiler.expressions.toArray(new ASTExpression[0]);
+		this.maxStackSize = compiler.maxStackSize;
+		this.count = count;
+	}
+
+	// returns the compiled expression, or the expression itself when lowering doesn't reduce the work
+	public static ASTExpression lower(CFDGBuilder builder, ASTExpression exp) {
+		if (exp == null || exp instanceof ASTCompiledExpression || exp instanceof ASTReal) {
+			return exp;
+		}
+		if (exp.getType() != ExpType.Numeric && exp.getType() != ExpType.Flag) {
+			return exp;
+		}
+		final int count = exp.evaluate(builder, null, 0);
+		if (count <= 0 || count > MAX_VECTOR_SIZE) {
+			return exp;
+		}
+		final Compiler compiler = new Compiler(builder);
+		if (!compiler.emit(exp) || compiler.stackSize != count || compiler.expressions.contains(exp)) {
+			return exp;
+		}
+		return new ASTCompiledExpression(exp, compiler, count);
+	}
+
+	@Override
+	public int evaluate(CFDGBuilder builder, CFDGRenderer renderer, double[] result, int length) {
+		if (result == null) {
+			return count;
+		}
+		if (renderer == null) {
+			return expression.evaluate(builder, null, result, length);
+		}
+		if (length < count) {
+			return -1;
+		}
+		final double[] stack = new double[maxStackSize];
+		final double[] value = new double[1];
+		double[] scratch = null;
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			switch (code[pc++]) {
+				case CONST -> stack[sp++] = values[code[pc++]];
+				case LOAD -> {
+					final int stackIndex = code[pc++];
+					final int size = code[pc++];
+					for (int i = 0; i < size; i++) {
+						stack[sp++] = ((CFStackNumber) renderer.getStackItem(stackIndex + i)).getNumber();
+					}
+				}
+				case EVAL -> {
+					final ASTExpression exp = expressions[code[pc++]];
+					final int size = code[pc++];
+					if (scratch == null) {
+						scratch = new double[MAX_VECTOR_SIZE];
+					}
+					if (exp.evaluate(builder, renderer, scratch, MAX_VECTOR_SIZE) != size) {
+						return -1;
+					}
+					System.arraycopy(scratch, 0, stack, sp, size);
+					sp += size;
+				}
+				case FUNCTION -> {
+					final ASTFunction function = (ASTFunction) expressions[code[pc++]];
+					final int size = code[pc++];
+					if (scratch == null) {
+						scratch = new double[MAX_VECTOR_SIZE];
+					}
+					sp -= size;
+					System.arraycopy(stack, sp, scratch, 0, size);
+					if (function.apply(renderer, scratch, size, value) == -1) {
+						return -1;
+					}
+					stack[sp++] = value[0];
+				}
+				case NEG -> stack[sp - 1] = -stack[sp - 1];
+				case NOT -> stack[sp - 1] = stack[sp - 1] == 0.0 ? 1.0 : 0.0;
+				case ADD -> { sp -= 1; stack[sp - 1] = stack[sp - 1] + stack[sp]; }
+				case SUB -> { sp -= 1; stack[sp - 1] = stack[sp - 1] - stack[sp]; }
+				case PSUB -> { sp -= 1; stack[sp - 1] = Math.max(stack[sp - 1] - stack[sp], 0.0); }
+				case MUL -> { sp -= 1; stack[sp - 1] = stack[sp - 1] * stack[sp]; }
+				case DIV -> { sp -= 1; stack[sp - 1] = stack[sp - 1] / stack[sp]; }
+				case LT -> { sp -= 1; stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1.0 : 0.0; }
+				case LE -> { sp -= 1; stack[sp - 1] = stack[sp - 1] <= stack[sp] ? 1.0 : 0.0; }
+				case GT -> { sp -= 1; stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1.0 : 0.0; }
+				case GE -> { sp -= 1; stack[sp - 1] = stack[sp - 1] >= stack[sp] ? 1.0 : 0.0; }
+				case EQ -> { sp -= 1; stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1.0 : 0.0; }
+				case NE -> { sp -= 1; stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1.0 : 0.0; }
+				case XOR -> { sp -= 1; stack[sp - 1] = (stack[sp - 1] != 0 && stack[sp] == 0 || stack[sp - 1] == 0 && stack[sp] != 0) ? 1.0 : 0.0; }
+				case POW -> { sp -= 1; stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]); }
+				case POW_NATURAL -> { sp -= 1; stack[sp - 1] = naturalPow(stack[sp - 1], stack[sp]); }
+				case FLAG_OR -> { sp -= 1; stack[sp - 1] = (int) stack[sp - 1] | (int) stack[sp]; }
+				case JUMP_IF_ZERO -> {
+					final int target = code[pc++];
+					if (stack[sp - 1] == 0.0) {
+						stack[sp - 1] = 0.0;
+						pc = target;
+					} else {
+						sp -= 1;
+					}
+				}
+				case JUMP_IF_NOT_ZERO -> {
+					final int target = code[pc++];
+					if (stack[sp - 1] != 0.0) {
+						pc = target;
+					} else {
+						sp -= 1;
+					}
+				}
+				default -> {
+					return -1;
+				}
+			}
+		}
+		System.arraycopy(stack, 0, result, 0, count);
+		return count;
+	}
+
+	@Override
+	public void entropy(StringBuilder entropy) {
+		expression.entropy(entropy);
+	}
+
+	private static double naturalPow(double left, double right) {
+		final double value = Math.pow(left, right);
+		if (value >= AST.MAX_NATURAL) {
+			return value;
+		}
+		long pow = 1;
+		long il = (long) left;
+		long ir = (long) right;
+		while (ir != 0) {
+			if ((ir & 1) != 0) pow *= il;
+			il *= il;
+			ir >>= 1;
+		}
+		return pow;
+	}
+
+	private static class Compiler {
+		private final CFDGBuilder builder;
+		private final List<ASTExpression> expressions = new ArrayList<>();
+		private int[] code = new int[16];
+		private int codeSize;
+		private double[] values = new double[4];
+		private int valuesSize;
+		private int stackSize;
+		private int maxStackSize;
+
+		public Compiler(CFDGBuilder builder) {
+			this.builder = builder;
+		}
+
+		public boolean emit(ASTExpression exp) {
+			switch (exp) {
+				case ASTReal real -> {
+					emitConstant(real.getValue());
+					return true;
+				}
+				case ASTParen paren when paren.getType() == ExpType.Numeric -> {
+					return emit(paren.getExpression());
+				}
+				case ASTCons cons when cons.getType() == ExpType.Numeric || cons.getType() == ExpType.Flag -> {
+					for (ASTExpression child : cons.getChildren()) {
+						if (!emit(child)) {
+							return false;
+						}
+					}
+					return true;
+				}
+				case ASTVariable variable when variable.getType() == ExpType.Numeric && !variable.isConstant() && variable.getStackIndex() != ASTVariable.IllegalStackIndex -> {
+					emitCode(LOAD, variable.getStackIndex(), variable.getCount());
+					push(variable.getCount());
+					return true;
+				}
+				case ASTOperator operator when isScalarOperator(operator) -> {
+					return emitOperator(operator);
+				}
+				case ASTFunction function when function.isScalarFunction(builder) -> {
+					final int argCount = function.getArguments().evaluate(builder, null, 0);
+					if (!emit(function.getArguments())) {
+						return false;
+					}
+					emitCode(FUNCTION, expressions.size(), argCount);
+					expressions.add(function);
+					pop(argCount);
+					push(1);
+					return true;
+				}
+				default -> {
+					// the expression is evaluated by the tree, for example a user function or a select
+					final int size = exp.evaluate(builder, null, 0);
+					if (size <= 0 || size > MAX_VECTOR_SIZE) {
+						return false;
+					}
+					emitCode(EVAL, expressions.size(), size);
+					expressions.add(exp);
+					push(size);
+					return true;
+				}
+			}
+		}
+
+		// the tree evaluates the operands of an operator as scalars, therefore only scalar operators are lowered
+		private boolean isScalarOperator(ASTOperator operator) {
+			final boolean flag = operator.getType() == ExpType.Flag && operator.getOp() == '+';
+			if (operator.getType() != ExpType.Numeric && !flag) {
+				return false;
+			}
+			if (operator.getTupleSize() != 1 || operator.getLeft() == null || operator.getLeft().evaluate(builder, null, 0) != 1) {
+				return false;
+			}
+			if (operator.getRight() == null) {
+				return "NP!".indexOf(operator.getOp()) != -1;
+			}
+			return operator.getRight().evaluate(builder, null, 0) == 1 && "+-*/^_<>LG=n&|X".indexOf(operator.getOp()) != -1;
+		}
+
+		private boolean emitOperator(ASTOperator operator) {
+			if (!emit(operator.getLeft())) {
+				return false;
+			}
+			if (operator.getRight() == null) {
+				switch (operator.getOp()) {
+					case 'N' -> emitCode(NEG);
+					case '!' -> emitCode(NOT);
+					default -> {
+					}
+				}
+				return true;
+			}
+			if (operator.getOp() == '&' || operator.getOp() == '|') {
+				// the right operand is skipped when the left operand decides the value
+				emitCode(operator.getOp() == '&' ? JUMP_IF_ZERO : JUMP_IF_NOT_ZERO, 0);
+				final int target = codeSize - 1;
+				pop(1);
+				if (!emit(operator.getRight())) {
+					return false;
+				}
+				code[target] = codeSize;
+				return true;
+			}
+			if (!emit(operator.getRight())) {
+				return false;
+			}
+			if (operator.getType() == ExpType.Flag) {
+				emitCode(FLAG_OR);
+			} else {
+				emitCode(switch (operator.getOp()) {
+					case '+' -> ADD;
+					case '-' -> SUB;
+					case '_' -> PSUB;
+					case '*' -> MUL;
+					case '/' -> DIV;
+					case '<' -> LT;
+					case 'L' -> LE;
+					case '>' -> GT;
+					case 'G' -> GE;
+					case '=' -> EQ;
+					case 'n' -> NE;
+					case 'X' -> XOR;
+					default -> operator.isNatural() ? POW_NATURAL : POW;
+				});
+			}
+			pop(1);
+			return true;
+		}
+
+		private void emitConstant(double value) {
+			if (valuesSize == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			values[valuesSize++] = value;
+			emitCode(CONST, valuesSize - 1);
+			push(1);
+		}
+
+		private void emitCode(int... instruction) {
+			if (codeSize + instruction.length > code.length) {
+				code = Arrays.copyOf(code, Math.max(code.length * 2, codeSize + instruction.length));
+			}
+			System.arraycopy(instruction, 0, code, codeSize, instruction.length);
+			codeSize += instruction.length;
+		}
+
+		private void push(int size) {
+			stackSize += size;
+			maxStackSize = Math.max(maxStackSize, stackSize);
+		}
+
+		private void pop(int size) {
+			stackSize -= size;
+		}
+	}
+}
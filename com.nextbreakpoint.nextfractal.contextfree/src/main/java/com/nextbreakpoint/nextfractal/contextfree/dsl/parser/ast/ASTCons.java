@@ -98,8 +98,8 @@ public class ASTCons extends ASTExpression {
 			return -1;
 		}
 		int count = 0;
+		final double[] value = result != null ? new double[length] : null;
 		for (ASTExpression child : children) {
-			final double[] value = result != null ? new double[length] : null;
 			final int num = child.evaluate(builder, renderer, value, length);
 			if (num <= 0) {
 				return -1;
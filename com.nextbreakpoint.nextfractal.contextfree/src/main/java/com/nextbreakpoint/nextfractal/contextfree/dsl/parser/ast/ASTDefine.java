@@ -107,6 +107,9 @@ public class ASTDefine extends ASTReplacement {
 			exp = ASTExpression.compile(builder, phase, exp);
 			if (phase == CompilePhase.Simplify) {
 				exp = ASTExpression.simplify(builder, exp);
+				if (defineType == DefineType.Stack && exp != null && !exp.isConstant()) {
+					exp = ASTCompiledExpression.lower(builder, exp);
+				}
 			}
 		}
 
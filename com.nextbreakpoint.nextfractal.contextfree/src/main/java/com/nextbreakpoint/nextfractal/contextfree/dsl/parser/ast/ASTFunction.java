@@ -215,6 +215,23 @@ public class ASTFunction extends ASTExpression {
 		// But checkParam it anyway to make valgrind happy
 		if (count < 0) return 1;
 
+        return apply(renderer, a, count, result);
+	}
+
+    // returns true when the function computes a scalar from at most two scalar arguments with apply
+    boolean isScalarFunction(CFDGBuilder builder) {
+        if (type != ExpType.Numeric || arguments == null || arguments.getType() != ExpType.Numeric) {
+            return false;
+        }
+        final int count = arguments.evaluate(builder, null, 0);
+        return switch (funcType) {
+            case Min, Max, Dot, Cross, Vec, Hsb2Rgb, Rgb2Hsb, RandDiscrete -> false;
+            default -> count >= 1 && count <= 2;
+        };
+    }
+
+    // computes the function of arguments already evaluated, and it is used by the compiled expressions too
+    int apply(CFDGRenderer renderer, double[] a, int count, double[] result) {
         switch (funcType) {
             case Cos -> result[0] = Math.cos(a[0] * 0.0174532925199);
             case Sin -> result[0] = Math.sin(a[0] * 0.0174532925199);
@@ -87,7 +87,7 @@ public class ASTIf extends ASTReplacement {
                     system.error("If condition must be a numeric scalar", getWhere());
                 }
             }
-            case Simplify -> condition = ASTExpression.simplify(builder, condition);
+            case Simplify -> condition = ASTCompiledExpression.lower(builder, ASTExpression.simplify(builder, condition));
             default -> {
             }
         }
@@ -174,6 +174,7 @@ public class ASTLoop extends ASTReplacement {
 					finallyBody.getParameters().getFirst().setNatural(finallyNatural);
 
 				}
+				loopArgs = ASTCompiledExpression.lower(builder, loopArgs);
                 loopBody.compile(builder, phase, null, null);
                 finallyBody.compile(builder, phase, null, null);
             }
@@ -245,7 +245,7 @@ public class ASTModification extends ASTExpression {
 			}
 
 			if (keepThisOne) {
-				term.setArguments(ASTExpression.simplify(builder, term.getArguments()));
+				term.setArguments(ASTCompiledExpression.lower(builder, ASTExpression.simplify(builder, term.getArguments())));
 				modExp.add(term);
 			}
 		}
@@ -31,6 +31,7 @@ import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.CFStackRule;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.Modification;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.CompilePhase;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.ExpType;
+import lombok.Getter;
 
 // astexpression.h
 // this file is part of Context Free
@@ -55,6 +56,7 @@ import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.enums.ExpType;
 // John Horigan, 1209 Villa St., Mountain View, CA 94041-1123, USA
 
 public class ASTParen extends ASTExpression {
+	@Getter
 	private ASTExpression expression;
 	
 	public ASTParen(CFDGSystem system, ASTWhere where, ASTExpression expression) {
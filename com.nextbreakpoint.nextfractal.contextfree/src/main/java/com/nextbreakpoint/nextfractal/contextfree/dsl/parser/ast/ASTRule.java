@@ -65,7 +65,8 @@ import java.util.Objects;
 // John Horigan, 1209 Villa St., Mountain View, CA 94041-1123, USA
 
 public class ASTRule extends ASTReplacement implements Comparable<ASTRule> {
-	private ASTCompiledPath cachedPath;
+	// the cached path is published to the renderers which draw the retained shapes concurrently
+	private volatile ASTCompiledPath cachedPath;
 	@Getter
     private final ASTRepContainer ruleBody;
 	@Getter
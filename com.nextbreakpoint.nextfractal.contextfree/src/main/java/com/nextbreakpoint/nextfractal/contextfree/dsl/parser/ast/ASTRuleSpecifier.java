@@ -222,10 +222,10 @@ public class ASTRuleSpecifier extends ASTExpression {
 		if (arguments != null) {
 			if (arguments instanceof ASTCons args) {
                 for (int i = 0; i < args.getChildren().size(); i++) {
-					args.setChild(i, ASTExpression.simplify(builder, args.getChild(i)));
+					args.setChild(i, ASTCompiledExpression.lower(builder, ASTExpression.simplify(builder, args.getChild(i))));
 				}
 			} else {
-				arguments = ASTExpression.simplify(builder, arguments);
+				arguments = ASTCompiledExpression.lower(builder, ASTExpression.simplify(builder, arguments));
 			}
 		}
 		if (argSource == ArgSource.StackArgs) {
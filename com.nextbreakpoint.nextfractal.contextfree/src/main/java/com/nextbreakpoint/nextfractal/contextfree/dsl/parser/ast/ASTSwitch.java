@@ -146,7 +146,7 @@ public class ASTSwitch extends ASTReplacement {
 					}
 				}
 			}
-            case Simplify -> switchExp = ASTExpression.simplify(builder, switchExp);
+            case Simplify -> switchExp = ASTCompiledExpression.lower(builder, ASTExpression.simplify(builder, switchExp));
             default -> {
             }
         }
@@ -59,7 +59,7 @@ import lombok.Getter;
 
 @Getter
 public class ASTVariable extends ASTExpression {
-    private static final int IllegalStackIndex = Integer.MAX_VALUE;
+    static final int IllegalStackIndex = Integer.MAX_VALUE;
 
 	private final String text;
 	private final int stringIndex;
@@ -0,0 +1,259 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.contextfree.graphics;
+
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFCanvas;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFDGImage;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFListener;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFParser;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFParserResult;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFRenderer;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFStats;
+import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
+import com.nextbreakpoint.nextfractal.core.common.ThreadUtils;
+import com.nextbreakpoint.nextfractal.core.graphics.Size;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_SIZE;
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_TTL;
+
+/**
+ * Keeps the expansions of the scripts being rendered, so that all tiles of the same image share one expansion.
+ * Expansions which are not used for longer than the time to live are disposed, together with their spill files.
+ */
+@Log
+public class ExpansionCache {
+	@Getter
+	private static final ExpansionCache sharedCache = new ExpansionCache(Integer.getInteger(PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_SIZE, 2),
+			Long.getLong(PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_TTL, 30L) * 1000L);
+
+	private final Map<Key, Expansion> expansions = new LinkedHashMap<>(16, 0.75f, true);
+	private final int maxExpansions;
+	private final long timeToLive;
+	private ScheduledExecutorService executor;
+
+	public ExpansionCache(int maxExpansions, long timeToLive) {
+		this.maxExpansions = Math.max(1, maxExpansions);
+		this.timeToLive = Math.max(1, timeToLive);
+	}
+
+	public Expansion acquire(String script, String seed, Size size) {
+		final Key key = new Key(script, seed, size);
+		final List<Expansion> evictedExpansions = new ArrayList<>();
+		final Expansion expansion;
+		synchronized (this) {
+			expansion = expansions.computeIfAbsent(key, _ -> new Expansion(script, seed, size));
+			expansion.lastUsed = System.currentTimeMillis();
+			final Iterator<Expansion> iterator = expansions.values().iterator();
+			while (expansions.size() > maxExpansions && iterator.hasNext()) {
+				evictedExpansions.add(iterator.next());
+				iterator.remove();
+			}
+			if (executor == null) {
+				// the thread is created on demand and terminated when the cache is empty
+				executor = ExecutorUtils.newSingleThreadScheduledExecutor(ThreadUtils.createPlatformThreadFactory("Expansion Cache"));
+				executor.scheduleWithFixedDelay(this::evictExpired, timeToLive, timeToLive, TimeUnit.MILLISECONDS);
+			}
+		}
+		evictedExpansions.forEach(Expansion::dispose);
+		return expansion;
+	}
+
+	public void clear() {
+		final List<Expansion> evictedExpansions;
+		final ScheduledExecutorService evictionExecutor;
+		synchronized (this) {
+			evictedExpansions = new ArrayList<>(expansions.values());
+			expansions.clear();
+			evictionExecutor = executor;
+			executor = null;
+		}
+		if (evictionExecutor != null) {
+			evictionExecutor.shutdown();
+		}
+		evictedExpansions.forEach(Expansion::dispose);
+	}
+
+	private void evictExpired() {
+		final List<Expansion> evictedExpansions = new ArrayList<>();
+		synchronized (this) {
+			final long time = System.currentTimeMillis();
+			final Iterator<Expansion> iterator = expansions.values().iterator();
+			while (iterator.hasNext()) {
+				final Expansion expansion = iterator.next();
+				if (!expansion.isInUse() && time - expansion.lastUsed >= timeToLive) {
+					evictedExpansions.add(expansion);
+					iterator.remove();
+				}
+			}
+			if (expansions.isEmpty() && executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+		}
+		evictedExpansions.forEach(Expansion::dispose);
+	}
+
+	public static class Expansion {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final String script;
+		private final String seed;
+		private final Size size;
+		private CFRenderer renderer;
+		private boolean failed;
+		private boolean disposed;
+		// number of callers which are drawing the shapes without holding the lock
+		private volatile int drawers;
+		private volatile long lastUsed;
+
+		private Expansion(String script, String seed, Size size) {
+			this.script = script;
+			this.seed = seed;
+			this.size = size;
+		}
+
+		// the script is expanded by the first caller, and the shapes are drawn by each caller with its own drawer,
+		// therefore the tiles of an image are drawn concurrently. the canvas must have the size of the expansion.
+		// a caller which is interrupted stops waiting, and it stops the expansion or the drawing in progress.
+		public boolean draw(CFCanvas canvas) {
+			final CFRenderer drawer;
+			try {
+				lock.lockInterruptibly();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			try {
+				if (renderer == null && !failed && !disposed) {
+					expand();
+				}
+				if (renderer == null) {
+					return false;
+				}
+				drawer = renderer.createDrawer();
+				drawer.setListener(new InterruptionListener(drawer));
+				drawers += 1;
+			} finally {
+				lastUsed = System.currentTimeMillis();
+				lock.unlock();
+			}
+			try {
+				drawer.draw(canvas);
+				return drawer.errors().isEmpty() && !Thread.currentThread().isInterrupted();
+			} finally {
+				lock.lock();
+				try {
+					drawers -= 1;
+					if (disposed && drawers == 0) {
+						// the expansion has been evicted while callers were drawing it
+						releaseShapes();
+					}
+					lastUsed = System.currentTimeMillis();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private boolean isInUse() {
+			return drawers > 0 || lock.isLocked() || lock.hasQueuedThreads();
+		}
+
+		private void expand() {
+			try {
+				final CFParser parser = new CFParser();
+				final CFParserResult parserResult = parser.parse(script);
+				final CFDGImage cfdgImage = parserResult.classFactory().create();
+				final CFRenderer newRenderer = cfdgImage.createRenderer(size.width(), size.height(), seed);
+				newRenderer.setRetainShapes(true);
+				newRenderer.setListener(new InterruptionListener(newRenderer));
+				newRenderer.run(null, false);
+				if (Thread.currentThread().isInterrupted()) {
+					// the expansion is incomplete, therefore the next caller will expand the script again
+					newRenderer.releaseShapes();
+				} else if (newRenderer.errors().isEmpty()) {
+					renderer = newRenderer;
+				} else {
+					newRenderer.releaseShapes();
+					failed = true;
+				}
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Can't expand script", e);
+				failed = true;
+			}
+		}
+
+		private void dispose() {
+			lock.lock();
+			try {
+				disposed = true;
+				if (drawers == 0) {
+					releaseShapes();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void releaseShapes() {
+			if (renderer != null) {
+				renderer.releaseShapes();
+				renderer = null;
+			}
+		}
+	}
+
+	// the renderer notifies the listener from the thread which is expanding or drawing the shapes
+	private record InterruptionListener(CFRenderer renderer) implements CFListener {
+		@Override
+		public void draw() {
+			checkInterrupted();
+		}
+
+		@Override
+		public void stats(CFStats stats) {
+			checkInterrupted();
+		}
+
+		private void checkInterrupted() {
+			if (Thread.currentThread().isInterrupted()) {
+				renderer.stop();
+			}
+		}
+	}
+
+	private record Key(String script, String seed, Size size) {}
+}
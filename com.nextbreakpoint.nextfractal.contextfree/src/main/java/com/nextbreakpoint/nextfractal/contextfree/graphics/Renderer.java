@@ -24,12 +24,17 @@
  */
 package com.nextbreakpoint.nextfractal.contextfree.graphics;
 
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFCanvas;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFDGImage;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFListener;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.CFRenderer;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.CFStats;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.BandedCanvas;
 import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.SimpleCanvas;
 import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
 import com.nextbreakpoint.nextfractal.core.common.RendererDelegate;
 import com.nextbreakpoint.nextfractal.core.common.ScriptError;
+import com.nextbreakpoint.nextfractal.core.common.ThreadUtils;
 import com.nextbreakpoint.nextfractal.core.graphics.AffineTransform;
 import com.nextbreakpoint.nextfractal.core.graphics.GraphicsContext;
 import com.nextbreakpoint.nextfractal.core.graphics.GraphicsFactory;
@@ -56,8 +61,14 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 
+import static com.nextbreakpoint.nextfractal.contextfree.module.SystemProperties.PROPERTY_CONTEXTFREE_RENDERING_BANDS;
+
 @Log
 public class Renderer {
+	// the band threads are shared by all renderers, therefore tiles rendered concurrently don't add threads
+	private static final int bands = Integer.getInteger(PROPERTY_CONTEXTFREE_RENDERING_BANDS, Runtime.getRuntime().availableProcessors());
+	private static final ExecutorService bandsExecutor = bands > 1 ? ExecutorUtils.newFixedThreadPool(bands, ThreadUtils.createPlatformThreadFactory("ContextFree Bands")) : null;
+
 	private final Lock lock = new Lock();
 	private final GraphicsFactory renderFactory;
 	private final ExecutorService executor;
@@ -70,6 +81,8 @@ public class Renderer {
 	@Getter
 	private volatile float progress;
 	@Getter
+	private volatile CFStats stats;
+	@Getter
 	private volatile boolean interrupted;
 	@Getter
 	private boolean initialized;
@@ -148,8 +161,18 @@ public class Renderer {
 			throw new IllegalStateException("Operation not permitted");
 		}
 		renderer = image.createRenderer(size.width(), size.height(), seed);
-		//TODO propagate progress from CF renderer
-		renderer.setListener(() -> update(0, pixels));
+		renderer.setListener(new CFListener() {
+			@Override
+			public void draw() {
+				update(progress, pixels);
+			}
+
+			@Override
+			public void stats(CFStats stats) {
+				Renderer.this.stats = stats;
+				update(stats.progress(), List.of());
+			}
+		});
 	}
 
 	//TODO is getPixels required?
@@ -252,6 +275,7 @@ public class Renderer {
 	private void render() {
 		final List<ScriptError> errors = new ArrayList<>();
 		Graphics2D g2d = null;
+		BandedCanvas bandedCanvas = null;
 		try {
 			g2d = image.createGraphics();
 			g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
@@ -260,9 +284,16 @@ public class Renderer {
 			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 			g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
 			if (renderer != null) {
-                renderer.run(new SimpleCanvas(g2d, buffer.getTile()), true);
+				if (bandsExecutor != null) {
+					bandedCanvas = new BandedCanvas(image, g2d.getRenderingHints(), buffer.getTile(), bands, bandsExecutor);
+				}
+				final CFCanvas canvas = bandedCanvas != null ? bandedCanvas : new SimpleCanvas(g2d, buffer.getTile());
+                renderer.run(canvas, true);
 				//TODO what errors are being collected?
 				errors.addAll(renderer.errors());
+				if (canvas.hasError()) {
+					errors.add(RendererErrors.makeError(0, 0, 0, 0, "Can't draw shapes"));
+				}
 			}
 			if (!interrupted) {
 				update(1, pixels);
@@ -271,6 +302,9 @@ public class Renderer {
 			log.log(Level.WARNING, "Can't render image", e);
 			errors.add(RendererErrors.makeError(0, 0, 0, 0, e.getMessage()));
 		} finally {
+			if (bandedCanvas != null) {
+				bandedCanvas.dispose();
+			}
 			if (g2d != null) {
 				g2d.dispose();
 			}
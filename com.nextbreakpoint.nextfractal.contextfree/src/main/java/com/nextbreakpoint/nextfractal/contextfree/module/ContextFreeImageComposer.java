@@ -24,14 +24,11 @@
  */
 package com.nextbreakpoint.nextfractal.contextfree.module;
 
-import com.nextbreakpoint.nextfractal.contextfree.dsl.CFDGImage;
-import com.nextbreakpoint.nextfractal.contextfree.dsl.CFParser;
-import com.nextbreakpoint.nextfractal.contextfree.dsl.CFParserResult;
-import com.nextbreakpoint.nextfractal.contextfree.graphics.Renderer;
+import com.nextbreakpoint.nextfractal.contextfree.dsl.parser.SimpleCanvas;
+import com.nextbreakpoint.nextfractal.contextfree.graphics.ExpansionCache;
 import com.nextbreakpoint.nextfractal.core.common.ImageComposer;
 import com.nextbreakpoint.nextfractal.core.common.Metadata;
-import com.nextbreakpoint.nextfractal.core.graphics.GraphicsFactory;
-import com.nextbreakpoint.nextfractal.core.graphics.GraphicsUtils;
+import com.nextbreakpoint.nextfractal.core.graphics.ImagePool;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import com.nextbreakpoint.nextfractal.core.graphics.Tile;
 import lombok.extern.java.Log;
@@ -39,7 +36,6 @@ import lombok.extern.java.Log;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.nio.IntBuffer;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
@@ -49,55 +45,77 @@ public class ContextFreeImageComposer implements ImageComposer {
     private boolean aborted;
     private final boolean opaque;
     private final Tile tile;
-    private final ThreadFactory threadFactory;
+    private BufferedImage image;
 
     public ContextFreeImageComposer(ThreadFactory threadFactory, Tile tile, boolean opaque) {
         this.tile = tile;
         this.opaque = opaque;
-        this.threadFactory = threadFactory;
     }
 
     @Override
     public IntBuffer renderImage(String script, Metadata data) {
         final ContextFreeMetadata metadata = (ContextFreeMetadata) data;
         final Size suggestedSize = tile.tileSize();
-        final BufferedImage image = new BufferedImage(suggestedSize.width(), suggestedSize.height(), BufferedImage.TYPE_INT_ARGB);
-        final IntBuffer buffer = IntBuffer.wrap(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
-        Graphics2D g2d = null;
+        release();
+        image = ImagePool.getSharedPool().acquire(suggestedSize.width(), suggestedSize.height());
+        final IntBuffer buffer = IntBuffer.wrap(ImagePool.getPixels(image));
+        final Size borderSize = tile.borderSize();
+        final boolean hasBorder = borderSize.width() > 0 || borderSize.height() > 0;
+        // without border the shapes are drawn directly into the image of the tile
+        final BufferedImage tileImage = hasBorder ? ImagePool.getSharedPool().acquire(suggestedSize.width() + borderSize.width() * 2, suggestedSize.height() + borderSize.height() * 2) : image;
         try {
-            g2d = image.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-            final CFParser parser = new CFParser();
-            final CFParserResult parserResult = parser.parse(script);
-            final CFDGImage cfdgImage = parserResult.classFactory().create();
-            final GraphicsFactory renderFactory = GraphicsUtils.findGraphicsFactory("Java2D");
-            final Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
-            renderer.setImage(cfdgImage, metadata.getSeed());
-            renderer.setOpaque(opaque);
-            renderer.init();
-            renderer.runTask();
-            renderer.waitForTask();
-            if (renderer.getProgress() != 1) {
+            Graphics2D g2d = null;
+            try {
+                g2d = tileImage.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+                g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+                final SimpleCanvas canvas = new SimpleCanvas(g2d, tile);
+                // all tiles of the same image share the expansion, and the canvas draws only the shapes which touch the tile
+                final ExpansionCache.Expansion expansion = ExpansionCache.getSharedCache().acquire(script, metadata.getSeed(), new Size(canvas.getWidth(), canvas.getHeight()));
+                if (!expansion.draw(canvas)) {
+                    aborted = true;
+                    return buffer;
+                }
+            } catch (Throwable e) {
+                log.log(Level.WARNING, "Can't render image", e);
                 aborted = true;
                 return buffer;
+            } finally {
+                if (g2d != null) {
+                    g2d.dispose();
+                }
+            }
+            if (hasBorder) {
+                Graphics2D imageG2d = null;
+                try {
+                    imageG2d = image.createGraphics();
+                    imageG2d.drawImage(tileImage, 0, 0, null);
+                } finally {
+                    if (imageG2d != null) {
+                        imageG2d.dispose();
+                    }
+                }
             }
-            renderer.copyImage(renderFactory.createGraphicsContext(g2d));
-        } catch (Throwable e) {
-            log.log(Level.WARNING, "Can't render image", e);
-            aborted = true;
         } finally {
-            if (g2d != null) {
-                g2d.dispose();
+            if (hasBorder) {
+                ImagePool.getSharedPool().release(tileImage);
             }
         }
         return buffer;
     }
 
+    @Override
+    public void release() {
+        if (image != null) {
+            ImagePool.getSharedPool().release(image);
+            image = null;
+        }
+    }
+
     @Override
     public Size getSize() {
         return tile.tileSize();
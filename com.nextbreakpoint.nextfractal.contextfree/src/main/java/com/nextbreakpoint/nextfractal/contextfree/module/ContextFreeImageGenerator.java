@@ -62,11 +62,12 @@ public class ContextFreeImageGenerator implements ImageGenerator {
 		final int[] pixels = new int[suggestedSize.width() * suggestedSize.height()];
         Arrays.fill(pixels, 0xFF000000);
 		final IntBuffer buffer = IntBuffer.wrap(pixels);
+		Renderer renderer = null;
 		try {
 			final CFParser parser = new CFParser();
 			final CFParserResult parserResult = parser.parse(script);
 			final CFDGImage cfdgImage = parserResult.classFactory().create();
-			final Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
+			renderer = new Renderer(threadFactory, renderFactory, tile);
 			renderer.setImage(cfdgImage, metadata.getSeed());
 			renderer.setOpaque(opaque);
 			renderer.init();
@@ -80,6 +81,10 @@ public class ContextFreeImageGenerator implements ImageGenerator {
 		} catch (Throwable e) {
 			log.log(Level.WARNING, "Can't render image", e);
 			aborted = true;
+		} finally {
+			if (renderer != null) {
+				renderer.dispose();
+			}
 		}
 		return buffer;
 	}
@@ -0,0 +1,34 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.contextfree.module;
+
+public interface SystemProperties {
+    String PROPERTY_CONTEXTFREE_RENDERING_SHAPES_MEMORY_LIMIT = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.shapes.memory.limit";
+    String PROPERTY_CONTEXTFREE_RENDERING_BANDS = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.bands";
+    String PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_SIZE = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.expansion.cache.size";
+    String PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_WORKERS = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.expansion.workers";
+    String PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_LARGEST_FIRST = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.expansion.largest.first";
+    String PROPERTY_CONTEXTFREE_RENDERING_EXPANSION_CACHE_TTL = "com.nextbreakpoint.nextfractal.contextfree.module.rendering.expansion.cache.ttl";
+}
@@ -357,6 +357,8 @@ public class ExportPane extends BorderPane {
                 formatCombobox.getItems().add(new String[]{"Quicktime video", "MOV"});
                 formatCombobox.getItems().add(new String[]{"MP4 video", "MP4"});
                 formatCombobox.getItems().add(new String[]{"AVI video", "AVI"});
+                formatCombobox.getItems().add(new String[]{"PNG sequence", "PNGSEQ"});
+                formatCombobox.getItems().add(new String[]{"JPEG sequence", "JPEGSEQ"});
                 formatCombobox.getSelectionModel().select(2);
             } else {
                 formatCombobox.getItems().clear();
@@ -25,7 +25,6 @@
 package com.nextbreakpoint.nextfractal.core.common;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -44,7 +43,7 @@ public class Animation {
     }
 
     public List<AnimationFrame> generateFrames() {
-        final List<AnimationFrame> frames = new LinkedList<>();
+        final AnimationFrames frames = new AnimationFrames();
         if (!clips.isEmpty() && clips.getFirst().events().size() > 1) {
             int currentClip = 0;
             int currentEvent = 0;
@@ -53,7 +52,7 @@ public class Animation {
             float prevTime = 0;
             AnimationEvent event = clips.getFirst().events().getFirst();
             long baseTime = event.date().getTime();
-            AnimationFrame lastFrame = null;
+            AnimationEvent lastEvent = null;
             logger.fine("0) clip " + currentClip + ", event " + currentEvent);
             while (frameIndex < frameCount && currentClip < clips.size() && currentEvent < clips.get(currentClip).events().size()) {
                 currentEvent += 1;
@@ -64,7 +63,7 @@ public class Animation {
                         baseTime = clips.get(currentClip).events().getFirst().date().getTime();
                         prevTime = time;
                     }
-                    lastFrame = null;
+                    lastEvent = null;
                 }
                 logger.fine("1) clip " + currentClip + ", event " + currentEvent);
                 if (currentClip < clips.size() && currentEvent < clips.get(currentClip).events().size()) {
@@ -73,13 +72,12 @@ public class Animation {
                     time = prevTime + (nextEvent.date().getTime() - baseTime) / 1000f;
                     while (frameTime - time < 0.01f) {
                         logger.fine("1) frame " + frameIndex + ", time " + frameTime);
-                        AnimationFrame frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), true, false);
-                        if (lastFrame != null && lastFrame.isSame(frame)) {
+                        final boolean repeated = lastEvent != null && isSame(lastEvent, event);
+                        if (repeated) {
                             logger.fine("1) not key frame");
-                            frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), false, true);
                         }
-                        lastFrame = frame;
-                        frames.add(frame);
+                        lastEvent = event;
+                        frames.add(event, repeated);
                         frameIndex += 1;
                         frameTime = frameIndex / frameRate;
                     }
@@ -87,13 +85,12 @@ public class Animation {
                 } else {
                     float frameTime = frameIndex / frameRate;
                     logger.fine("2) frame " + frameIndex + ", time " + frameTime);
-                    AnimationFrame frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), true, false);
-                    if (lastFrame != null && lastFrame.isSame(frame)) {
+                    final boolean repeated = lastEvent != null && isSame(lastEvent, event);
+                    if (repeated) {
                         logger.fine("2) not key frame");
-                        frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), false, true);
                     }
-                    lastFrame = frame;
-                    frames.add(frame);
+                    lastEvent = event;
+                    frames.add(event, repeated);
                     frameIndex += 1;
                 }
             }
@@ -103,6 +100,11 @@ public class Animation {
         return frames;
     }
 
+    // same condition of AnimationFrame.isSame
+    private static boolean isSame(AnimationEvent event, AnimationEvent other) {
+        return event.pluginId().equals(other.pluginId()) && event.script().equals(other.script()) && event.metadata().equals(other.metadata());
+    }
+
     private int computeFrameCount(double startTime, double stopTime, float frameRate) {
         return (int) Math.floor((stopTime - startTime) / frameRate);
     }
@@ -0,0 +1,76 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.core.common;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Sequence of animation frames which are created on demand. Consecutive frames of the same event
+ * are stored as one run, therefore the memory depends on the number of events rather than on the
+ * number of frames, and all frames of an event share the same script and metadata.
+ */
+public class AnimationFrames extends AbstractList<AnimationFrame> implements RandomAccess {
+    private final List<AnimationEvent> events = new ArrayList<>();
+    private final BitSet repeated = new BitSet();
+    private int[] starts = new int[16];
+    private int size;
+
+    void add(AnimationEvent event, boolean repeatedFrame) {
+        final int runs = events.size();
+        if (repeatedFrame && runs > 0 && events.getLast() == event) {
+            size += 1;
+            return;
+        }
+        if (runs == starts.length) {
+            starts = Arrays.copyOf(starts, runs * 2);
+        }
+        starts[runs] = size;
+        repeated.set(runs, repeatedFrame);
+        events.add(event);
+        size += 1;
+    }
+
+    @Override
+    public AnimationFrame get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        final int search = Arrays.binarySearch(starts, 0, events.size(), index);
+        final int run = search >= 0 ? search : -search - 2;
+        final AnimationEvent event = events.get(run);
+        final boolean repeatedFrame = index != starts[run] || repeated.get(run);
+        return new AnimationFrame(event.pluginId(), event.script(), event.metadata(), !repeatedFrame, repeatedFrame);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -50,6 +50,10 @@ public class ExecutorUtils {
         return Executors.newFixedThreadPool(poolSize, threadFactory);
     }
 
+    public static ExecutorService newWorkStealingPool(int parallelism) {
+        return Executors.newWorkStealingPool(parallelism);
+    }
+
     public static ScheduledExecutorService newSingleThreadScheduledExecutor(ThreadFactory threadFactory) {
         return Executors.newSingleThreadScheduledExecutor(threadFactory);
     }
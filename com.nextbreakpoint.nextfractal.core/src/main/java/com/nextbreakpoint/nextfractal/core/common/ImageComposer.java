@@ -46,4 +46,10 @@ public interface ImageComposer {
 	 * @return
 	 */
     boolean isAborted();
+
+	/**
+	 * Releases the pixels returned by renderImage, which must not be used afterwards.
+	 */
+	default void release() {
+	}
 }
@@ -72,12 +72,14 @@ public class TileGenerator {
                 .optional()
                 .orElseThrow();
 
-        final IntBuffer pixels = composer.renderImage(session.script(), session.metadata());
-
         try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            final IntBuffer pixels = composer.renderImage(session.script(), session.metadata());
+
             writePNGImage(os, pixels, renderTile.tileSize());
 
             return os.toByteArray();
+        } finally {
+            composer.release();
         }
     }
 
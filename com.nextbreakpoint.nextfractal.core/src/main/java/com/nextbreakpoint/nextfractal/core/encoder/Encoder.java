@@ -42,6 +42,13 @@ public interface Encoder {
 	 */
 	boolean isVideoSupported();
 
+	/**
+	 * @return true when each frame is encoded into a separate file
+	 */
+	default boolean isSequenceSupported() {
+		return false;
+	}
+
 	/**
 	 * @param delegate
 	 */
@@ -0,0 +1,99 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.core.encoder;
+
+import java.util.Objects;
+
+public class MemoryEncoderContext implements EncoderContext {
+	private final String sessionId;
+	private final byte[] frameBuffer;
+	private final int imageWidth;
+	private final int imageHeight;
+	private final int frameRate;
+
+	/**
+	 *
+	 * @param sessionId
+	 * @param frameBuffer the RGBA pixels of the frame, row by row
+	 * @param imageWidth
+	 * @param imageHeight
+	 * @param frameRate
+	 */
+	public MemoryEncoderContext(final String sessionId, final byte[] frameBuffer, final int imageWidth, final int imageHeight, final int frameRate) {
+		this.sessionId = Objects.requireNonNull(sessionId);
+		this.frameBuffer = Objects.requireNonNull(frameBuffer);
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.frameRate = frameRate;
+	}
+
+	@Override
+	public byte[] getPixelsAsByteArray(final int n, final int x, final int y, final int w, final int h, final int s) {
+		return getPixelsAsByteArray(n, x, y, w, h, s, false);
+	}
+
+	@Override
+	public byte[] getPixelsAsByteArray(final int n, final int x, final int y, final int w, final int h, final int s, final boolean flip) {
+		final byte[] data = new byte[w * h * s];
+		// the buffer contains only the current frame, therefore the frame number is ignored
+		int pos = (y * getImageWidth() + x) * 4;
+		int t = flip ? (h - 1) * w * s : 0;
+		final int step = flip ? -w * s : w * s;
+		for (int k = 0; k < h; k++) {
+			if (s == 4) {
+				System.arraycopy(frameBuffer, pos, data, t, w * 4);
+			} else if (s == 3) {
+				for (int j = t, i = pos; j < t + w * 3; j += 3, i += 4) {
+					data[j] = frameBuffer[i];
+					data[j + 1] = frameBuffer[i + 1];
+					data[j + 2] = frameBuffer[i + 2];
+				}
+			}
+			t += step;
+			pos += getImageWidth() * 4;
+		}
+		return data;
+	}
+
+	@Override
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	@Override
+	public int getImageHeight() {
+		return imageHeight;
+	}
+
+	@Override
+	public int getFrameRate() {
+		return frameRate;
+	}
+
+	@Override
+	public String getSessionId() {
+		return sessionId;
+	}
+}
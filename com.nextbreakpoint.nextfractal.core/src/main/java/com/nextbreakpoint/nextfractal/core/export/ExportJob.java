@@ -45,8 +45,13 @@ public class ExportJob {
 
 	//TODO extract code to separate class
 	public void writePixels(Size size, IntBuffer pixels) throws IOException {
-		try (RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "rw")) {
-			writeFrame(raf, size, convertToBytes(size, pixels));
+		final byte[] frameBuffer = session.getFrameBuffer();
+		if (frameBuffer != null) {
+			writeFrame(frameBuffer, size, pixels);
+		} else {
+			try (RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "rw")) {
+				writeFrame(raf, size, pixels);
+			}
 		}
 	}
 
@@ -56,7 +61,7 @@ public class ExportJob {
 	}
 
 	//TODO extract code to separate class
-	private void writeFrame(RandomAccessFile raf, Size size, byte[] data) throws IOException {
+	private void writeFrame(RandomAccessFile raf, Size size, IntBuffer pixels) throws IOException {
 		final int sw = size.width();
 		final int sh = size.height();
 		final int tx = profile.tileOffsetX();
@@ -67,28 +72,49 @@ public class ExportJob {
 		final int ih = profile.frameHeight();
 		final int ly = Math.min(th, ih - ty);
 		final int lx = Math.min(tw, iw - tx);
+		// the pixels are converted one row at a time, so that the tile is never copied as a whole
+		final byte[] row = new byte[lx * 4];
 		long pos = ((long)ty * (long)iw + tx) * 4L;
-		for (int j = ((sw * (sh - th) + (sw - tw)) / 2) * 4, k = 0; k < ly; k++) {
+		for (int j = (sw * (sh - th) + (sw - tw)) / 2, k = 0; k < ly; k++) {
+			for (int p = j, i = 0; i < row.length; p++, i += 4) {
+				final int pixel = pixels.get(p);
+				row[i] = (byte)((pixel >> 16) & 0xFF);
+				row[i + 1] = (byte)((pixel >> 8) & 0xFF);
+				row[i + 2] = (byte)((pixel) & 0xFF);
+				row[i + 3] = (byte)((pixel >> 24) & 0xFF);
+			}
 			raf.seek(pos);
-			raf.write(data, j, lx * 4);
-			j += sw * 4;
+			raf.write(row);
+			j += sw;
 			pos += iw * 4L;
 			Thread.yield();
 		}
 	}
 
 	//TODO extract code to separate class
-	private byte[] convertToBytes(Size size, IntBuffer pixels) {
+	private void writeFrame(byte[] frameBuffer, Size size, IntBuffer pixels) {
 		final int sw = size.width();
 		final int sh = size.height();
-		final byte[] data = new byte[sw * sh * 4];
-		for (int j = 0, i = 0; i < data.length; i += 4) {
-			int pixel = pixels.get(j++);
-			data[i] = (byte)((pixel >> 16) & 0xFF);
-			data[i + 1] = (byte)((pixel >> 8) & 0xFF);
-			data[i + 2] = (byte)((pixel) & 0xFF);
-			data[i + 3] = (byte)((pixel >> 24) & 0xFF);
+		final int tx = profile.tileOffsetX();
+		final int ty = profile.tileOffsetY();
+		final int tw = profile.tileWidth();
+		final int th = profile.tileHeight();
+		final int iw = profile.frameWidth();
+		final int ih = profile.frameHeight();
+		final int ly = Math.min(th, ih - ty);
+		final int lx = Math.min(tw, iw - tx);
+		int pos = (ty * iw + tx) * 4;
+		// tiles don't overlap, therefore each tile can write its rows without synchronization
+		for (int j = (sw * (sh - th) + (sw - tw)) / 2, k = 0; k < ly; k++) {
+			for (int p = j, i = pos; p < j + lx; p++, i += 4) {
+				final int pixel = pixels.get(p);
+				frameBuffer[i] = (byte)((pixel >> 16) & 0xFF);
+				frameBuffer[i + 1] = (byte)((pixel >> 8) & 0xFF);
+				frameBuffer[i + 2] = (byte)((pixel) & 0xFF);
+				frameBuffer[i + 3] = (byte)((pixel >> 24) & 0xFF);
+			}
+			j += sw;
+			pos += iw * 4;
 		}
-		return data;
 	}
 }
@@ -27,16 +27,25 @@ package com.nextbreakpoint.nextfractal.core.export;
 import lombok.Getter;
 
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 public class ExportJobHandle {
     @Getter
     private final ExportJob job;
 
+    private final BiConsumer<ExportJobState, ExportJobState> stateListener;
     private ExportJobState state;
     private Throwable error;
+    private long elapsedTime;
+    private long writeTime;
 
     public ExportJobHandle(ExportJob job) {
+        this(job, (_, _) -> {});
+    }
+
+    public ExportJobHandle(ExportJob job, BiConsumer<ExportJobState, ExportJobState> stateListener) {
         this.job = Objects.requireNonNull(job);
+        this.stateListener = Objects.requireNonNull(stateListener);
         this.state = ExportJobState.READY;
     }
 
@@ -48,9 +57,33 @@ public class ExportJobHandle {
         return state;
     }
 
-    public synchronized void setState(ExportJobState state, Throwable error) {
-        this.state = state;
-        this.error = error;
+    public void setState(ExportJobState state, Throwable error) {
+        final ExportJobState previousState;
+        synchronized (this) {
+            previousState = this.state;
+            this.state = state;
+            this.error = error;
+        }
+        // the listener is notified without holding the lock of the job
+        if (previousState != state) {
+            stateListener.accept(previousState, state);
+        }
+    }
+
+    public synchronized long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public synchronized void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    public synchronized long getWriteTime() {
+        return writeTime;
+    }
+
+    public synchronized void setWriteTime(long writeTime) {
+        this.writeTime = writeTime;
     }
 
     public void setState(ExportJobState state) {
@@ -24,6 +24,8 @@
  */
 package com.nextbreakpoint.nextfractal.core.export;
 
+import java.util.Optional;
+
 public interface ExportService {
 	void shutdown();
 
@@ -36,4 +38,10 @@ public interface ExportService {
 	void resumeSession(ExportSession session);
 
     int getSessionCount();
+
+	long getMemoryUsage();
+
+	long getMemoryBudget();
+
+	Optional<ExportSessionStatistics> getStatistics(ExportSession session);
 }
@@ -65,7 +65,11 @@ public final class ExportSession {
 	private final Instant timestamp;
 
 	private final List<ExportJob> jobs = new ArrayList<>();
-	private final List<AnimationFrame> frames = new ArrayList<>();
+	private final List<AnimationFrame> frames;
+
+	// when present, tiles are assembled in memory instead of the temporary file
+	@Getter
+	private volatile byte[] frameBuffer;
 
 	public ExportSession(String sessionId, Session session, List<AnimationClip> clips, File file, File tmpFile, Size frameSize, int tileSize, Encoder encoder) {
 		this.sessionId = Objects.requireNonNull(sessionId);
@@ -76,8 +80,8 @@ public final class ExportSession {
 		this.tileSize = tileSize;
 		this.quality = 1;
 		this.frameRate = Constants.FRAMES_PER_SECOND;
-		createFrames(session, clips);
-		jobs.addAll(createJobs());
+		frames = createFrames(session, clips);
+		jobs.addAll(createJobs(tileSize));
 		timestamp = Instant.now(Clock.systemUTC());
 	}
 
@@ -97,23 +101,35 @@ public final class ExportSession {
 		return Collections.unmodifiableList(frames);
 	}
 
+	public byte[] allocateFrameBuffer() {
+		if (frameBuffer == null) {
+			frameBuffer = new byte[frameSize.width() * frameSize.height() * 4];
+		}
+		return frameBuffer;
+	}
+
+	public void releaseFrameBuffer() {
+		frameBuffer = null;
+	}
+
 	@Override
 	public String toString() {
 		return "[sessionId = " + sessionId + "]";
 	}
 
 	//TODO extract code to separate class
-	private void createFrames(Session session, List<AnimationClip> clips) {
+	private List<AnimationFrame> createFrames(Session session, List<AnimationClip> clips) {
 		if (!clips.isEmpty() && clips.getFirst().events().size() > 1) {
+			// frames are created on demand, therefore we don't copy them
 			final Animation animation = new Animation(clips, frameRate);
-			this.frames.addAll(animation.generateFrames());
+			return animation.generateFrames();
 		} else {
-			frames.add(new AnimationFrame(session.pluginId(), session.script(), session.metadata(), true, true));
+			return List.of(new AnimationFrame(session.pluginId(), session.script(), session.metadata(), true, true));
 		}
 	}
 
 	//TODO extract code to separate class
-	private List<ExportJob> createJobs() {
+	public List<ExportJob> createJobs(int tileSize) {
 		final List<ExportJob> jobs = new ArrayList<>();
 		final int frameWidth = frameSize.width();
 		final int frameHeight = frameSize.height();
@@ -126,7 +142,7 @@ public final class ExportSession {
 				for (int ty = 0; ty < ny; ty++) {
 					int tileOffsetX = tileSize * tx;
 					int tileOffsetY = tileSize * ty;
-					jobs.add(createJob(createProfile(frameWidth, frameHeight, tileOffsetX, tileOffsetY)));
+					jobs.add(createJob(createProfile(frameWidth, frameHeight, tileSize, tileOffsetX, tileOffsetY)));
 				}
 			}
 		}
@@ -134,26 +150,26 @@ public final class ExportSession {
 			for (int ty = 0; ty < ny; ty++) {
 				int tileOffsetX = tileSize * nx;
 				int tileOffsetY = tileSize * ty;
-				jobs.add(createJob(createProfile(frameWidth, frameHeight, tileOffsetX, tileOffsetY)));
+				jobs.add(createJob(createProfile(frameWidth, frameHeight, tileSize, tileOffsetX, tileOffsetY)));
 			}
 		}
 		if (ry > 0) {
 			for (int tx = 0; tx < nx; tx++) {
 				int tileOffsetX = tileSize * tx;
 				int tileOffsetY = tileSize * ny;
-				jobs.add(createJob(createProfile(frameWidth, frameHeight, tileOffsetX, tileOffsetY)));
+				jobs.add(createJob(createProfile(frameWidth, frameHeight, tileSize, tileOffsetX, tileOffsetY)));
 			}
 		}
 		if (rx > 0 && ry > 0) {
 			int tileOffsetX = tileSize * nx;
 			int tileOffsetY = tileSize * ny;
-			jobs.add(createJob(createProfile(frameWidth, frameHeight, tileOffsetX, tileOffsetY)));
+			jobs.add(createJob(createProfile(frameWidth, frameHeight, tileSize, tileOffsetX, tileOffsetY)));
 		}
 		return jobs;
 	}
 
 	//TODO extract code to separate class
-	private ExportProfile createProfile(final int frameWidth, final int frameHeight, int tileOffsetX, int tileOffsetY) {
+	private ExportProfile createProfile(final int frameWidth, final int frameHeight, int tileSize, int tileOffsetX, int tileOffsetY) {
 		return ExportProfile.builder()
 				.withFrameWidth(frameWidth)
 				.withFrameHeight(frameHeight)
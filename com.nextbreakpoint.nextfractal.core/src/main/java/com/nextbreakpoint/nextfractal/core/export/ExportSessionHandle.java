@@ -25,8 +25,11 @@
 package com.nextbreakpoint.nextfractal.core.export;
 
 import com.nextbreakpoint.nextfractal.core.common.AnimationFrame;
+import com.nextbreakpoint.nextfractal.core.encoder.Encoder;
+import com.nextbreakpoint.nextfractal.core.encoder.EncoderContext;
 import com.nextbreakpoint.nextfractal.core.encoder.EncoderException;
 import com.nextbreakpoint.nextfractal.core.encoder.EncoderHandle;
+import com.nextbreakpoint.nextfractal.core.encoder.MemoryEncoderContext;
 import com.nextbreakpoint.nextfractal.core.encoder.RAFEncoderContext;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import lombok.Getter;
@@ -46,7 +49,7 @@ import java.util.stream.Collectors;
 
 @Log
 public final class ExportSessionHandle {
-	private final Set<ExportJobHandle> jobs = new HashSet<>();
+	private Set<ExportJobHandle> jobs;
 
 	@Getter
     private final ExportSession session;
@@ -56,7 +59,20 @@ public final class ExportSessionHandle {
 	private boolean cancelled;
 	private boolean suspended;
 	private long timestamp;
+	private int tileSize;
+	private int jobsGeneration;
+	private int completedJobsCount;
 	private ExportSessionState state;
+	private long completedTiles;
+	private long totalRenderTime;
+	private long maxRenderTime;
+	private long totalWriteTime;
+	private long totalQueueWaitTime;
+	private long encodedFrames;
+	private long totalEncodeTime;
+	private long maxEncodeTime;
+	private long activeTime;
+	private long activeSince;
 
 	@Getter
 	@Setter
@@ -67,7 +83,8 @@ public final class ExportSessionHandle {
 		this.frameNumber = 0;
 		this.state = ExportSessionState.READY;
 		this.timestamp = System.currentTimeMillis();
-		this.jobs.addAll(session.getJobs().stream().map(ExportJobHandle::new).collect(Collectors.toSet()));
+		this.tileSize = session.getTileSize();
+		this.jobs = createJobHandles(session.getJobs(), jobsGeneration);
 	}
 
 	public synchronized int getFrameNumber() {
@@ -104,9 +121,27 @@ public final class ExportSessionHandle {
 
 	public synchronized void setState(ExportSessionState state) {
 		timestamp = System.currentTimeMillis();
+		// only the time spent processing the session counts for the statistics
+		if (this.state != ExportSessionState.DISPATCHED && state == ExportSessionState.DISPATCHED) {
+			activeSince = timestamp;
+		} else if (this.state == ExportSessionState.DISPATCHED && state != ExportSessionState.DISPATCHED) {
+			activeTime += timestamp - activeSince;
+		}
 		this.state = Objects.requireNonNull(state);
 	}
 
+	public synchronized int getTileSize() {
+		return tileSize;
+	}
+
+	// replaces the jobs of the current frame with jobs of a different tile size
+	public synchronized void setTileSize(int tileSize) {
+		this.tileSize = tileSize;
+		this.jobsGeneration += 1;
+		this.completedJobsCount = 0;
+		this.jobs = createJobHandles(session.createJobs(tileSize), jobsGeneration);
+	}
+
 	public synchronized void updateProgress() {
 		progress = getFrameCount() > 1 ? ((getFrameNumber() + 1f) / (float)getFrameCount()) : (getCompletedJobsCount() / (float)getJobsCount());
 	}
@@ -147,35 +182,65 @@ public final class ExportSessionHandle {
 		return session.getTmpFile();
 	}
 
-	public int getJobsCount() {
-		return session.getJobs().size();
+	public synchronized int getJobsCount() {
+		return jobs.size();
 	}
 
-	public int getCompletedJobsCount() {
-		return jobs.stream().filter(job -> job.getState() == ExportJobState.COMPLETED).mapToInt(_ -> 1).sum();
+	public synchronized int getCompletedJobsCount() {
+		return completedJobsCount;
 	}
 
-	public boolean isFrameCompleted() {
-		return getCompletedJobsCount() == getJobsCount();
+	public synchronized boolean isFrameCompleted() {
+		return completedJobsCount == jobs.size();
 	}
 
     public boolean isSessionCompleted() {
         return (getFrameCount() == 0 || getFrameNumber() == getFrameCount() - 1) && isFrameCompleted();
     }
 
-	public Collection<ExportJobHandle> getJobs() {
+	public synchronized Collection<ExportJobHandle> getJobs() {
 		return Collections.unmodifiableSet(jobs);
 	}
 
+	public synchronized void recordTile(long queueWaitTime, long renderTime, long writeTime) {
+		completedTiles += 1;
+		totalQueueWaitTime += queueWaitTime;
+		totalRenderTime += renderTime;
+		totalWriteTime += writeTime;
+		maxRenderTime = Math.max(maxRenderTime, renderTime);
+	}
+
+	public synchronized void recordEncode(long encodeTime, int frameCount) {
+		encodedFrames += frameCount;
+		totalEncodeTime += encodeTime;
+		maxEncodeTime = Math.max(maxEncodeTime, encodeTime);
+	}
+
+	public synchronized ExportSessionStatistics getStatistics() {
+		final long elapsedTime = activeTime + (state == ExportSessionState.DISPATCHED ? System.currentTimeMillis() - activeSince : 0);
+		return new ExportSessionStatistics(completedTiles, totalRenderTime, maxRenderTime, totalWriteTime, totalQueueWaitTime,
+				encodedFrames, totalEncodeTime, maxEncodeTime, elapsedTime, estimateTimeRemaining(elapsedTime));
+	}
+
 	public synchronized void openEncoder() throws IOException, EncoderException {
+		openEncoder(0);
+	}
+
+	public synchronized void openEncoder(long memoryBudget) throws IOException, EncoderException {
 		if (encoderHandle == null) {
-			final RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "r");
 			final String sessionId = session.getSessionId();
 			final int frameRate = session.getFrameRate();
 			final int imageWidth = session.getFrameSize().width();
 			final int imageHeight = session.getFrameSize().height();
-			final RAFEncoderContext context = new RAFEncoderContext(sessionId, raf, imageWidth, imageHeight, frameRate);
-			encoderHandle = session.getEncoder().open(context, session.getFile());
+			if (session.getFrameCount() == 1 && imageWidth * (long) imageHeight * 4L <= memoryBudget) {
+				final byte[] frameBuffer = session.allocateFrameBuffer();
+				final MemoryEncoderContext context = new MemoryEncoderContext(sessionId, frameBuffer, imageWidth, imageHeight, frameRate);
+				encoderHandle = session.getEncoder().open(context, session.getFile());
+			} else {
+				final RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "r");
+				final RAFEncoderContext context = new RAFEncoderContext(sessionId, raf, imageWidth, imageHeight, frameRate);
+				encoderHandle = session.getEncoder().open(context, session.getFile());
+			}
 		}
 	}
 
@@ -184,7 +249,8 @@ public final class ExportSessionHandle {
 			try {
 				session.getEncoder().close(encoderHandle);
 			} finally {
-				if (!session.getTmpFile().delete()) {
+				session.releaseFrameBuffer();
+				if (session.getTmpFile().exists() && !session.getTmpFile().delete()) {
 					log.log(Level.WARNING, "Cannot delete temporary file: " + session.getTmpFile());
 				}
 				encoderHandle = null;
@@ -195,4 +261,42 @@ public final class ExportSessionHandle {
 	public synchronized void encode(int frameNumber, int repeatFrameCount, int frameCount) throws EncoderException {
 		session.getEncoder().encode(encoderHandle, frameNumber, repeatFrameCount, frameCount);
 	}
+
+	public void encode(EncoderContext context, int frameNumber, int repeatFrameCount, int frameCount) throws EncoderException {
+		// frames of a sequence are written to separate files, therefore each frame uses its own handle
+		final Encoder encoder = session.getEncoder();
+		final EncoderHandle handle = encoder.open(context, session.getFile());
+		try {
+			encoder.encode(handle, frameNumber, repeatFrameCount, frameCount);
+		} finally {
+			encoder.close(handle);
+		}
+	}
+
+	private long estimateTimeRemaining(long elapsedTime) {
+		// animations progress by frames, while still images progress by tiles
+		if (getFrameCount() > 1) {
+			return encodedFrames > 0 ? (getFrameCount() - encodedFrames) * elapsedTime / encodedFrames : -1;
+		} else {
+			return completedJobsCount > 0 ? (jobs.size() - completedJobsCount) * elapsedTime / completedJobsCount : -1;
+		}
+	}
+
+	private Set<ExportJobHandle> createJobHandles(Collection<ExportJob> exportJobs, int generation) {
+		return exportJobs.stream()
+				.map(job -> new ExportJobHandle(job, (previousState, state) -> updateCompletedJobs(generation, previousState, state)))
+				.collect(Collectors.toCollection(HashSet::new));
+	}
+
+	private synchronized void updateCompletedJobs(int generation, ExportJobState previousState, ExportJobState state) {
+		// jobs which have been replaced by jobs of a different tile size are ignored
+		if (generation != jobsGeneration) {
+			return;
+		}
+		if (state == ExportJobState.COMPLETED) {
+			completedJobsCount += 1;
+		} else if (previousState == ExportJobState.COMPLETED) {
+			completedJobsCount -= 1;
+		}
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.core.export;
+
+/**
+ * Snapshot of the statistics of an export session. Times are in milliseconds. Render time
+ * includes the time spent writing the pixels, which is reported separately as write time.
+ * The elapsed time counts only the time the session was dispatched, and the estimated time
+ * remaining is -1 until some progress has been made.
+ */
+public record ExportSessionStatistics(
+		long completedTiles,
+		long totalRenderTime,
+		long maxRenderTime,
+		long totalWriteTime,
+		long totalQueueWaitTime,
+		long encodedFrames,
+		long totalEncodeTime,
+		long maxEncodeTime,
+		long elapsedTime,
+		long estimatedTimeRemaining
+) {
+	public long averageRenderTime() {
+		return completedTiles > 0 ? totalRenderTime / completedTiles : 0;
+	}
+
+	public long averageWriteTime() {
+		return completedTiles > 0 ? totalWriteTime / completedTiles : 0;
+	}
+
+	public long averageQueueWaitTime() {
+		return completedTiles > 0 ? totalQueueWaitTime / completedTiles : 0;
+	}
+
+	public long averageEncodeTime() {
+		return encodedFrames > 0 ? totalEncodeTime / encodedFrames : 0;
+	}
+
+	public double tilesPerSecond() {
+		return elapsedTime > 0 ? completedTiles * 1000.0 / elapsedTime : 0;
+	}
+
+	public double framesPerSecond() {
+		return elapsedTime > 0 ? encodedFrames * 1000.0 / elapsedTime : 0;
+	}
+}
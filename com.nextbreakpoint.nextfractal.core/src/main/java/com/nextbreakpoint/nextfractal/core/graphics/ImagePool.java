@@ -0,0 +1,123 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.core.graphics;
+
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the images of the tiles which have been rendered, so that the next tiles of the same
+ * size can be rendered into them instead of allocating new pixels. Images are returned cleared.
+ * The idle images are bounded by bytes and the images of the least recently used sizes are evicted first.
+ */
+public class ImagePool {
+	private static final long DEFAULT_MAX_IDLE_BYTES = 64L * 1024L * 1024L;
+
+	@Getter
+	private static final ImagePool sharedPool = new ImagePool(DEFAULT_MAX_IDLE_BYTES);
+
+	private final Map<Size, Deque<BufferedImage>> idleImages = new LinkedHashMap<>(16, 0.75f, true);
+	@Getter
+	private final long maxIdleBytes;
+	private long idleBytes;
+
+	public ImagePool(long maxIdleBytes) {
+		this.maxIdleBytes = maxIdleBytes;
+	}
+
+	public BufferedImage acquire(int width, int height) {
+		final BufferedImage image;
+		synchronized (this) {
+			image = pollImage(new Size(width, height));
+		}
+		if (image == null) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+		Arrays.fill(getPixels(image), 0);
+		return image;
+	}
+
+	public synchronized void release(BufferedImage image) {
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_ARGB || sizeOf(image) > maxIdleBytes) {
+			return;
+		}
+		idleImages.computeIfAbsent(new Size(image.getWidth(), image.getHeight()), _ -> new ArrayDeque<>()).addLast(image);
+		idleBytes += sizeOf(image);
+		while (idleBytes > maxIdleBytes && !idleImages.isEmpty()) {
+			evictEldest();
+		}
+	}
+
+	public synchronized void clear() {
+		idleImages.clear();
+		idleBytes = 0;
+	}
+
+	public static int[] getPixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	private BufferedImage pollImage(Size size) {
+		final Deque<BufferedImage> images = idleImages.get(size);
+		if (images == null) {
+			return null;
+		}
+		final BufferedImage image = images.pollLast();
+		if (images.isEmpty()) {
+			idleImages.remove(size);
+		}
+		if (image != null) {
+			idleBytes -= sizeOf(image);
+		}
+		return image;
+	}
+
+	private void evictEldest() {
+		final Iterator<Deque<BufferedImage>> iterator = idleImages.values().iterator();
+		if (!iterator.hasNext()) {
+			return;
+		}
+		final Deque<BufferedImage> images = iterator.next();
+		final BufferedImage image = images.pollFirst();
+		if (images.isEmpty()) {
+			iterator.remove();
+		}
+		if (image != null) {
+			idleBytes -= sizeOf(image);
+		}
+	}
+
+	private static long sizeOf(BufferedImage image) {
+		return (long) image.getWidth() * image.getHeight() * 4;
+	}
+}
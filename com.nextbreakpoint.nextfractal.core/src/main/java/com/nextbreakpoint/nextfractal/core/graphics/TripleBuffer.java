@@ -0,0 +1,81 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.core.graphics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free exchange of pixels between one writer thread and one reader thread.
+ * The array returned by latest() is not modified until the next call of latest().
+ * Arrays are recycled, therefore readers must use sequence() to detect new content.
+ */
+public class TripleBuffer {
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+
+	private final int[][] buffers = new int[3][];
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int writeIndex = 0;
+	private int readIndex = 2;
+	private long sequence;
+
+	public void publish(int[] pixels) {
+		int[] target = buffers[writeIndex];
+		if (target == null || target.length != pixels.length) {
+			target = new int[pixels.length];
+			buffers[writeIndex] = target;
+		}
+		System.arraycopy(pixels, 0, target, 0, pixels.length);
+		writeIndex = middle.getAndSet(writeIndex | FRESH) & INDEX;
+	}
+
+	public int[] latest() {
+		if ((middle.get() & FRESH) != 0) {
+			readIndex = middle.getAndSet(readIndex) & INDEX;
+			sequence++;
+		}
+		return buffers[readIndex];
+	}
+
+	/**
+	 * Discards the published arrays. It must be called when neither the writer nor the reader is active.
+	 */
+	public void clear() {
+		Arrays.fill(buffers, null);
+		middle.set(1);
+		writeIndex = 0;
+		readIndex = 2;
+		sequence++;
+	}
+
+	/**
+	 * Returns the number of published arrays consumed by latest() so far.
+	 * It must be called from the reader thread.
+	 */
+	public long sequence() {
+		return sequence;
+	}
+}
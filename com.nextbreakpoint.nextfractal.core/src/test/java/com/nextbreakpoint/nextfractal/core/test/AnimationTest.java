@@ -0,0 +1,126 @@
+package com.nextbreakpoint.nextfractal.core.test;
+
+import com.nextbreakpoint.nextfractal.core.common.Animation;
+import com.nextbreakpoint.nextfractal.core.common.AnimationClip;
+import com.nextbreakpoint.nextfractal.core.common.AnimationEvent;
+import com.nextbreakpoint.nextfractal.core.common.AnimationFrame;
+import com.nextbreakpoint.nextfractal.core.common.Metadata;
+import com.nextbreakpoint.nextfractal.core.common.Time;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnimationTest {
+	private static final int FRAME_RATE = 25;
+
+	@Test
+	public void shouldGenerateSameFramesOfLinkedList() {
+		List<AnimationClip> clips = List.of(
+				new AnimationClip()
+						.appendEvent(new Date(0), "test", "A", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(200), "test", "A", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(400), "test", "B", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(1000), "test", "B", new TestMetadata(new Time(0, 1))),
+				new AnimationClip()
+						.appendEvent(new Date(2000), "test", "B", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(2600), "test", "C", new TestMetadata(new Time(1, 1)))
+		);
+		List<AnimationFrame> expected = generateFramesWithLinkedList(clips);
+		List<AnimationFrame> actual = new Animation(clips, FRAME_RATE).generateFrames();
+		assertThat(expected).hasSizeGreaterThan(2);
+		assertThat(actual).containsExactlyElementsOf(expected);
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i)).isEqualTo(expected.get(i));
+		}
+	}
+
+	@Test
+	public void shouldMarkOnlyFirstFrameOfEventAsKeyFrame() {
+		List<AnimationClip> clips = List.of(
+				new AnimationClip()
+						.appendEvent(new Date(0), "test", "A", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(400), "test", "B", new TestMetadata(new Time(0, 1)))
+						.appendEvent(new Date(800), "test", "C", new TestMetadata(new Time(0, 1)))
+		);
+		List<AnimationFrame> frames = new Animation(clips, FRAME_RATE).generateFrames();
+		assertThat(frames).hasSizeGreaterThan(2);
+		assertThat(frames.getFirst().keyFrame()).isTrue();
+		assertThat(frames.getFirst().repeated()).isFalse();
+		for (int i = 1; i < frames.size(); i++) {
+			AnimationFrame frame = frames.get(i);
+			boolean same = frame.isSame(frames.get(i - 1));
+			assertThat(frame.keyFrame()).isEqualTo(!same);
+			assertThat(frame.repeated()).isEqualTo(same);
+		}
+	}
+
+	@Test
+	public void shouldGenerateNoFramesWithoutEnoughEvents() {
+		List<AnimationClip> clips = List.of(
+				new AnimationClip()
+						.appendEvent(new Date(0), "test", "A", new TestMetadata(new Time(0, 1)))
+		);
+		assertThat(new Animation(clips, FRAME_RATE).generateFrames()).isEmpty();
+	}
+
+	// generation of frames before frames were created on demand
+	private static List<AnimationFrame> generateFramesWithLinkedList(List<AnimationClip> clips) {
+		final List<AnimationFrame> frames = new LinkedList<>();
+		final long duration = clips.stream().mapToLong(AnimationClip::duration).sum();
+		final int frameCount = (int) Math.floor(duration / (double) FRAME_RATE);
+		if (!clips.isEmpty() && clips.getFirst().events().size() > 1) {
+			int currentClip = 0;
+			int currentEvent = 0;
+			float frameIndex = 0;
+			float time = 0;
+			float prevTime = 0;
+			AnimationEvent event = clips.getFirst().events().getFirst();
+			long baseTime = event.date().getTime();
+			AnimationFrame lastFrame = null;
+			while (frameIndex < frameCount && currentClip < clips.size() && currentEvent < clips.get(currentClip).events().size()) {
+				currentEvent += 1;
+				while (currentClip < clips.size() && currentEvent >= clips.get(currentClip).events().size()) {
+					currentClip += 1;
+					currentEvent = 0;
+					if (currentClip < clips.size() && !clips.get(currentClip).events().isEmpty()) {
+						baseTime = clips.get(currentClip).events().getFirst().date().getTime();
+						prevTime = time;
+					}
+					lastFrame = null;
+				}
+				if (currentClip < clips.size() && currentEvent < clips.get(currentClip).events().size()) {
+					AnimationEvent nextEvent = clips.get(currentClip).events().get(currentEvent);
+					float frameTime = frameIndex / FRAME_RATE;
+					time = prevTime + (nextEvent.date().getTime() - baseTime) / 1000f;
+					while (frameTime - time < 0.01f) {
+						AnimationFrame frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), true, false);
+						if (lastFrame != null && lastFrame.isSame(frame)) {
+							frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), false, true);
+						}
+						lastFrame = frame;
+						frames.add(frame);
+						frameIndex += 1;
+						frameTime = frameIndex / FRAME_RATE;
+					}
+					event = nextEvent;
+				} else {
+					AnimationFrame frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), true, false);
+					if (lastFrame != null && lastFrame.isSame(frame)) {
+						frame = new AnimationFrame(event.pluginId(), event.script(), event.metadata(), false, true);
+					}
+					lastFrame = frame;
+					frames.add(frame);
+					frameIndex += 1;
+				}
+			}
+		}
+		return new ArrayList<>(frames);
+	}
+
+	private record TestMetadata(Time time) implements Metadata {}
+}
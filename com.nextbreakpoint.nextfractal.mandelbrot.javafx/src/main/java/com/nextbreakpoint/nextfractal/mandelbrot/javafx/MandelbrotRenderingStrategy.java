@@ -92,7 +92,8 @@ public class MandelbrotRenderingStrategy implements RenderingStrategy {
 
         renderFactory = GraphicsUtils.findGraphicsFactory("JavaFX");
 
-        final Map<String, Integer> hints = Map.of(Coordinator.KEY_TYPE, Coordinator.VALUE_REALTIME);
+        final int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / (rows * columns));
+        final Map<String, Integer> hints = Map.of(Coordinator.KEY_TYPE, Coordinator.VALUE_REALTIME, Coordinator.KEY_WORKERS, workers);
         coordinators = createCoordinators(width, height, rows, columns, hints, "Mandelbrot Coordinator");
 
         final Map<String, Integer> juliaHints = Map.of(Coordinator.KEY_TYPE, Coordinator.VALUE_REALTIME);
@@ -241,6 +242,7 @@ public class MandelbrotRenderingStrategy implements RenderingStrategy {
                             coordinator.setColor(color);
                         }
                     }
+                    coordinator.setOrbitAndColorFactories(orbitFactory, colorFactory);
                     coordinator.init();
                     final View view = new View();
                     view.setTranslation(translation);
@@ -268,6 +270,7 @@ public class MandelbrotRenderingStrategy implements RenderingStrategy {
                         juliaCoordinator.setColor(color);
                     }
                 }
+                juliaCoordinator.setOrbitAndColorFactories(orbitFactory, colorFactory);
                 juliaCoordinator.init();
                 final View view = new View();
                 view.setTranslation(translation);
@@ -24,6 +24,7 @@
  */
 package com.nextbreakpoint.nextfractal.mandelbrot.graphics;
 
+import com.nextbreakpoint.nextfractal.core.common.ClassFactory;
 import com.nextbreakpoint.nextfractal.core.common.RendererDelegate;
 import com.nextbreakpoint.nextfractal.core.common.ScriptError;
 import com.nextbreakpoint.nextfractal.core.common.Time;
@@ -50,8 +51,12 @@ public class Coordinator {
 	public static final Integer VALUE_REALTIME = 1;
 	public static final String KEY_PROGRESS = "PROGRESS";
 	public static final Integer VALUE_SINGLE_PASS = 1;
+	public static final Integer VALUE_PROGRESSIVE = 2;
 	public static final String KEY_MULTITHREAD = "MULTITHREAD";
 	public static final Integer VALUE_SINGLE_THREAD = 1;
+	public static final String KEY_WORKERS = "WORKERS";
+	// supersampling is applied by the default renderer only, because the realtime renderer overrides render
+	public static final String KEY_SUPERSAMPLING = "SUPERSAMPLING";
 
 	private final HashMap<String, Integer> hints = new HashMap<>();
 	private final ThreadFactory threadFactory;
@@ -76,9 +81,18 @@ public class Coordinator {
 		if (hints.get(KEY_PROGRESS) != null && hints.get(KEY_PROGRESS) == VALUE_SINGLE_PASS) {
 			renderer.setSinglePass(true);
 		}
+		if (hints.get(KEY_PROGRESS) != null && hints.get(KEY_PROGRESS) == VALUE_PROGRESSIVE) {
+			renderer.setProgressive(true);
+		}
 		if (hints.get(KEY_MULTITHREAD) != null && hints.get(KEY_MULTITHREAD) == VALUE_SINGLE_THREAD) {
 			renderer.setMultiThread(false);
 		}
+		if (hints.get(KEY_WORKERS) != null) {
+			renderer.setWorkers(hints.get(KEY_WORKERS));
+		}
+		if (hints.get(KEY_SUPERSAMPLING) != null && !(renderer instanceof XaosRenderer)) {
+			renderer.setSupersampling(hints.get(KEY_SUPERSAMPLING));
+		}
 	}
 
 	public final void dispose() {
@@ -128,6 +142,11 @@ public class Coordinator {
 		renderer.setColor(color);
 	}
 
+	public void setOrbitAndColorFactories(ClassFactory<Orbit> orbitFactory, ClassFactory<Color> colorFactory) {
+		renderer.setOrbitFactory(orbitFactory);
+		renderer.setColorFactory(colorFactory);
+	}
+
 	public void init() {
 		renderer.init();
 	}
@@ -24,6 +24,7 @@
  */
 package com.nextbreakpoint.nextfractal.mandelbrot.graphics;
 
+import com.nextbreakpoint.nextfractal.core.common.ClassFactory;
 import com.nextbreakpoint.nextfractal.core.common.Colors;
 import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
 import com.nextbreakpoint.nextfractal.core.common.RendererDelegate;
@@ -37,6 +38,7 @@ import com.nextbreakpoint.nextfractal.core.graphics.Point;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import com.nextbreakpoint.nextfractal.core.graphics.Surface;
 import com.nextbreakpoint.nextfractal.core.graphics.Tile;
+import com.nextbreakpoint.nextfractal.core.graphics.TripleBuffer;
 import com.nextbreakpoint.nextfractal.mandelbrot.core.Color;
 import com.nextbreakpoint.nextfractal.mandelbrot.core.ComplexNumber;
 import com.nextbreakpoint.nextfractal.mandelbrot.core.MutableNumber;
@@ -48,8 +50,8 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.java.Log;
 
-import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
@@ -60,6 +62,8 @@ import java.util.logging.Level;
 
 @Log
 public class Renderer {
+	private static final int[] PROGRESSIVE_STEPS = new int[] { 4, 2, 1 };
+
 	protected final Fractal contentRendererFractal;
 	protected final Fractal previewRendererFractal;
 	protected final ThreadFactory threadFactory;
@@ -95,8 +99,20 @@ public class Renderer {
     @Setter
     protected boolean multiThread;
     @Setter
+    protected int workers = 1;
+    @Setter
+    protected ClassFactory<Orbit> orbitFactory;
+    @Setter
+    protected ClassFactory<Color> colorFactory;
+    @Setter
     protected boolean singlePass;
     @Setter
+    protected boolean progressive;
+    @Setter
+    protected int supersampling = 1;
+    @Setter
+    protected int supersamplingThreshold = 16;
+    @Setter
     protected boolean continuous;
     @Setter
     protected boolean timeAnimation;
@@ -111,6 +127,9 @@ public class Renderer {
 	private Future<?> future;
 	private final ExecutorService executor;
 	private final Lock lock = new Lock();
+	private final TripleBuffer pixelsBuffer = new TripleBuffer();
+	private long uploadedSequence = -1;
+	private boolean[] edges;
 
 	public Renderer(ThreadFactory threadFactory, GraphicsFactory renderFactory, Tile tile) {
 		this.threadFactory = threadFactory;
@@ -157,6 +176,67 @@ public class Renderer {
 		initialized = false;
 	}
 
+	public void reset() {
+		if (future != null) {
+			throw new IllegalStateException("Operation not permitted");
+		}
+		contentRendererFractal.setOrbit(null);
+		contentRendererFractal.setColor(null);
+		previewRendererFractal.setOrbit(null);
+		previewRendererFractal.setColor(null);
+		contentRendererStrategy = null;
+		previewRendererStrategy = null;
+		delegate = null;
+		if (previewTile != null) {
+			previewRendererData.free();
+			previewTile = null;
+		}
+		previewRegion = null;
+		contentRegion = null;
+		initialRegion = new Region();
+		transform = new Transform();
+		time = new Time(0, 1);
+		view = new View();
+		point = null;
+		julia = false;
+		opaque = true;
+		singlePass = false;
+		progressive = false;
+		supersampling = 1;
+		supersamplingThreshold = 16;
+		continuous = false;
+		timeAnimation = false;
+		interrupted = false;
+		initialized = false;
+		progress = 0;
+		lock.lock();
+		try {
+			// a reused renderer must not show the pixels of the previous image
+			pixelsBuffer.clear();
+			uploadedSequence = -1;
+			if (rotation != 0) {
+				rotation = 0;
+				ensureBufferAndSize();
+			}
+			buffer.getBuffer().clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setTile(Tile tile) {
+		if (future != null) {
+			throw new IllegalStateException("Operation not permitted");
+		}
+		lock.lock();
+		try {
+			this.tile = tile;
+			ensureBufferAndSize();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	public void runTask() {
 		if (!initialized) {
 			throw new IllegalStateException("Operation not permitted");
@@ -281,9 +361,10 @@ public class Renderer {
 		try {
 			final int bufferWidth = buffer.getSize().width();
 			final int bufferHeight = buffer.getSize().height();
-			final int[] bufferPixels = new int[bufferWidth * bufferHeight];
-			final IntBuffer tmpBuffer = IntBuffer.wrap(bufferPixels);
-			buffer.getBuffer().getImage().getPixels(tmpBuffer);
+			final int[] bufferPixels = readPixels();
+			if (bufferPixels == null || bufferPixels.length < bufferWidth * bufferHeight) {
+				return;
+			}
 			final int tileWidth = tile.tileSize().width();
 			final int tileHeight = tile.tileSize().height();
 			final int borderWidth = tile.borderSize().width();
@@ -306,6 +387,7 @@ public class Renderer {
 		lock.lock();
 		try {
 			if (buffer != null) {
+				updateBuffer();
 				gc.save();
 				// Size borderSize = buffer.getTile().borderSize();
 				final Size imageSize = buffer.getTile().imageSize();
@@ -345,6 +427,7 @@ public class Renderer {
 		lock.lock();
 		try {
 			if (buffer != null) {
+				updateBuffer();
 				gc.save();
 				gc.drawImage(buffer.getBuffer().getImage(), 0, 0);
 				gc.restore();
@@ -358,18 +441,34 @@ public class Renderer {
 		return contentRendererFractal.getOrbit().getTraps();
 	}
 
+	private void updateBuffer() {
+		final int[] pixels = readPixels();
+		if (pixels != null && pixelsBuffer.sequence() != uploadedSequence) {
+			buffer.getBuffer().update(pixels);
+			uploadedSequence = pixelsBuffer.sequence();
+		}
+	}
+
+	private int[] readPixels() {
+		// the triple buffer supports one reader only: callers must hold the lock
+		return pixelsBuffer.latest();
+	}
+
 	private void ensureBufferAndSize() {
 		final Tile newTile = computeOptimalBufferSize(tile, rotation);
 		final int width = newTile.tileSize().width() + newTile.borderSize().width() * 2;
 		final int height = newTile.tileSize().height() + newTile.borderSize().height() * 2;
 		size = new Size(width, height);
-		if (buffer != null) {
-			buffer.dispose();
+		if (buffer == null || !size.equals(buffer.getSize())) {
+			if (buffer != null) {
+				buffer.dispose();
+			}
+			buffer = new Surface();
+			buffer.setSize(size);
+			buffer.setBuffer(renderFactory.createBuffer(size.width(), size.height()));
+			uploadedSequence = -1;
 		}
-		buffer = new Surface();
-		buffer.setSize(size);
-		buffer.setTile(computeOptimalBufferSize(tile, rotation));
-		buffer.setBuffer(renderFactory.createBuffer(size.width(), size.height()));
+		buffer.setTile(newTile);
 		buffer.setAffine(createTransform(rotation));
 	}
 
@@ -495,66 +594,64 @@ public class Renderer {
 			final MutableNumber qw = new MutableNumber(0, 0);
 			final State p = contentRendererData.newPoint();
 			final State q = previewRendererData.newPoint();
-			int contentOffset = 0;
-			int contentColor = 0;
-			int previewOffset = 0;
-			int previewColor = 0;
-			final float dy = height / 5.0f;
-			float ty = dy;
 			if (!singlePass) {
 				update(0, contentRendererData.getPixels());
 			}
-			for (int y = 0; y < height; y++) {
-				for (int x = 0; x < width; x++) {
-					px.set(contentRendererData.point());
-					pw.set(contentRendererData.positionX(x), contentRendererData.positionY(y));
-					final boolean preview = isPreview(x, y);
-					if (preview) {
-						qx.set(previewRendererData.point());
-						int kx = x + tile.tileOffset().x() - previewTile.tileOffset().x();
-						int ky = y + tile.tileOffset().y() - previewTile.tileOffset().y();
-						qw.set(previewRendererData.positionX(kx), previewRendererData.positionY(ky));
-					}
-					transform.transform(pw);
-					if (redraw) {
-						contentColor = contentRendererStrategy.renderPoint(p, px, pw);
-						if (preview) {
-							previewColor = previewRendererStrategy.renderPoint(q, qx, qw);
+			if (progressive && redraw) {
+				int previousStep = 0;
+				for (int step : PROGRESSIVE_STEPS) {
+					for (int y = 0; y < height; y += step) {
+						for (int x = 0; x < width; x += step) {
+							if (previousStep > 0 && x % previousStep == 0 && y % previousStep == 0) {
+								continue;
+							}
+							renderPixel(x, y, true, p, q, px, pw, qx, qw);
+							if (step > 1) {
+								contentRendererData.fillPixels(x, y, step, step, contentRendererData.getPixel(y * width + x));
+							}
+							Thread.yield();
 						}
-					} else {
-						contentRendererData.getPoint(contentOffset, p);
-						contentColor = contentRendererStrategy.renderColor(p);
-						if (preview) {
-							previewRendererData.getPoint(previewOffset, q);
-							previewColor = previewRendererStrategy.renderColor(q);
+						if (interrupted) {
+							break;
 						}
 					}
-					contentRendererData.setPoint(contentOffset, p);
-					if (preview) {
-						previewRendererData.setPoint(previewOffset, q);
-						previewRendererData.setPixel(previewOffset, opaque ? 0xFF000000 | previewColor : previewColor);
-						final int mixedColor = Colors.mixColors(contentColor, previewColor, 200);
-						contentRendererData.setPixel(contentOffset, opaque ? 0xFF000000 | mixedColor : mixedColor);
-					} else {
-						contentRendererData.setPixel(contentOffset, opaque ? 0xFF000000 | contentColor : contentColor);
+					if (interrupted) {
+						break;
 					}
-					contentOffset += 1;
-					if (preview) {
-						previewOffset += 1;
+					if (step > 1) {
+						progress = 1f / (step * step);
+						if (!singlePass) {
+							update(progress, contentRendererData.getPixels());
+						}
 					}
-					Thread.yield();
-				}
-				if (interrupted) {
-					break;
+					previousStep = step;
 				}
-				if (y >= ty) {
-					progress = y / (float)(height - 1);
-					if (!singlePass) {
-						update(progress, contentRendererData.getPixels());
+			} else {
+				final float dy = height / 5.0f;
+				float ty = dy;
+				for (int y = 0; y < height; y++) {
+					for (int x = 0; x < width; x++) {
+						renderPixel(x, y, redraw, p, q, px, pw, qx, qw);
+						Thread.yield();
 					}
-					ty += dy;
+					if (interrupted) {
+						break;
+					}
+					if (y >= ty) {
+						progress = y / (float)(height - 1);
+						if (!singlePass) {
+							update(progress, contentRendererData.getPixels());
+						}
+						ty += dy;
+					}
+					Thread.yield();
+				}
+			}
+			if (!interrupted && supersampling > 1) {
+				if (!singlePass) {
+					update(progress, contentRendererData.getPixels());
 				}
-				Thread.yield();
+				renderSupersampling(p, px, pw);
 			}
 			if (!interrupted) {
 				progress = 1f;
@@ -570,6 +667,112 @@ public class Renderer {
 		}
 	}
 
+	private void renderPixel(int x, int y, boolean redraw, State p, State q, MutableNumber px, MutableNumber pw, MutableNumber qx, MutableNumber qw) {
+		final int contentOffset = y * getSize().width() + x;
+		final boolean preview = isPreview(x, y);
+		int previewOffset = 0;
+		int contentColor;
+		int previewColor = 0;
+		px.set(contentRendererData.point());
+		pw.set(contentRendererData.positionX(x), contentRendererData.positionY(y));
+		if (preview) {
+			final int kx = x + tile.tileOffset().x() - previewTile.tileOffset().x();
+			final int ky = y + tile.tileOffset().y() - previewTile.tileOffset().y();
+			previewOffset = ky * previewTile.tileSize().width() + kx;
+			qx.set(previewRendererData.point());
+			qw.set(previewRendererData.positionX(kx), previewRendererData.positionY(ky));
+		}
+		transform.transform(pw);
+		if (redraw) {
+			contentColor = contentRendererStrategy.renderPoint(p, px, pw);
+			if (preview) {
+				previewColor = previewRendererStrategy.renderPoint(q, qx, qw);
+			}
+		} else {
+			contentRendererData.getPoint(contentOffset, p);
+			contentColor = contentRendererStrategy.renderColor(p);
+			if (preview) {
+				previewRendererData.getPoint(previewOffset, q);
+				previewColor = previewRendererStrategy.renderColor(q);
+			}
+		}
+		contentRendererData.setPoint(contentOffset, p);
+		if (preview) {
+			previewRendererData.setPoint(previewOffset, q);
+			previewRendererData.setPixel(previewOffset, opaque ? 0xFF000000 | previewColor : previewColor);
+			final int mixedColor = Colors.mixColors(contentColor, previewColor, 200);
+			contentRendererData.setPixel(contentOffset, opaque ? 0xFF000000 | mixedColor : mixedColor);
+		} else {
+			contentRendererData.setPixel(contentOffset, opaque ? 0xFF000000 | contentColor : contentColor);
+		}
+	}
+
+	private void renderSupersampling(State p, MutableNumber px, MutableNumber pw) {
+		final int width = getSize().width();
+		final int height = getSize().height();
+		final int[] pixels = contentRendererData.getPixels();
+		if (edges == null || edges.length != width * height) {
+			edges = new boolean[width * height];
+		} else {
+			Arrays.fill(edges, false);
+		}
+		for (int y = 0, offset = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, offset++) {
+				if (x + 1 < width && isEdge(pixels[offset], pixels[offset + 1])) {
+					edges[offset] = true;
+					edges[offset + 1] = true;
+				}
+				if (y + 1 < height && isEdge(pixels[offset], pixels[offset + width])) {
+					edges[offset] = true;
+					edges[offset + width] = true;
+				}
+			}
+		}
+		final int samples = supersampling * supersampling;
+		final double stepX = width > 1 ? contentRendererData.positionX(1) - contentRendererData.positionX(0) : 0;
+		final double stepY = height > 1 ? contentRendererData.positionY(1) - contentRendererData.positionY(0) : 0;
+		for (int y = 0, offset = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, offset++) {
+				if (!edges[offset] || isPreview(x, y)) {
+					continue;
+				}
+				int a = 0;
+				int r = 0;
+				int g = 0;
+				int b = 0;
+				for (int j = 0; j < supersampling; j++) {
+					final double sy = contentRendererData.positionY(y) + ((j + 0.5) / supersampling - 0.5) * stepY;
+					for (int i = 0; i < supersampling; i++) {
+						final double sx = contentRendererData.positionX(x) + ((i + 0.5) / supersampling - 0.5) * stepX;
+						px.set(contentRendererData.point());
+						pw.set(sx, sy);
+						transform.transform(pw);
+						final int color = contentRendererStrategy.renderPoint(p, px, pw);
+						a += (color >> 24) & 0xFF;
+						r += (color >> 16) & 0xFF;
+						g += (color >> 8) & 0xFF;
+						b += color & 0xFF;
+					}
+				}
+				final int color = ((a / samples) << 24) | ((r / samples) << 16) | ((g / samples) << 8) | (b / samples);
+				contentRendererData.setPixel(offset, opaque ? 0xFF000000 | color : color);
+			}
+			if (interrupted) {
+				break;
+			}
+			Thread.yield();
+		}
+	}
+
+	private boolean isEdge(int color1, int color2) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			if (Math.abs(((color1 >> shift) & 0xFF) - ((color2 >> shift) & 0xFF)) > supersamplingThreshold) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private boolean isPreview(int x, int y) {
 		if (previewTile != null) {
 			final int kx = x + tile.tileOffset().x() - previewTile.tileOffset().x();
@@ -672,11 +875,7 @@ public class Renderer {
 	}
 
 	protected void update(float progress, int[] pixels) {
-		lock.lock();
-		if (buffer != null) {
-			buffer.getBuffer().update(pixels);
-		}
-		lock.unlock();
+		pixelsBuffer.publish(pixels);
 		update(progress, List.of());
 	}
 
@@ -52,10 +52,14 @@ public class RendererData {
 		positionY = null;
 		newPixels = null;
 		oldPixels = null;
-		region = null;
-		point = null;
 		newCache = null;
 		oldCache = null;
+		// the data can be reused after free, therefore the next call of setSize must allocate the arrays again
+		region = new Region();
+		point = new MutableNumber(0, 0);
+		width = 0;
+		height = 0;
+		depth = 0;
 	}
 
 	public void setSize(final int width, final int height, final int depth) {
@@ -212,6 +216,17 @@ public class RendererData {
 		System.arraycopy(oldCache, from * d2, newCache, to * d2, length * d2);
 	}
 
+	public void fillPixels(int x, int y, int w, int h, int argb) {
+		final int maxX = Math.min(x + w, width);
+		final int maxY = Math.min(y + h, height);
+		for (int j = y; j < maxY; j++) {
+			final int offset = j * width;
+			for (int i = x; i < maxX; i++) {
+				newPixels[offset + i] = argb;
+			}
+		}
+	}
+
 	public void clearPixels() {
 		for (int i = 0; i < width; i++) {
 			newPixels[i] = 0xFF000000;
@@ -0,0 +1,182 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.mandelbrot.graphics;
+
+import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
+import com.nextbreakpoint.nextfractal.core.common.ThreadUtils;
+import com.nextbreakpoint.nextfractal.core.graphics.GraphicsFactory;
+import com.nextbreakpoint.nextfractal.core.graphics.Size;
+import com.nextbreakpoint.nextfractal.core.graphics.Tile;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static com.nextbreakpoint.nextfractal.mandelbrot.module.SystemProperties.PROPERTY_MANDELBROT_RENDERING_POOL_SIZE;
+import static com.nextbreakpoint.nextfractal.mandelbrot.module.SystemProperties.PROPERTY_MANDELBROT_RENDERING_POOL_TTL;
+
+/**
+ * Keeps the renderers released by generators and composers, so that they can be reused with the same thread factory.
+ * Renderers which are not used for longer than the time to live are disposed, together with their executors.
+ */
+@Log
+public class RendererPool {
+	@Getter
+	private static final RendererPool sharedPool = new RendererPool(Integer.getInteger(PROPERTY_MANDELBROT_RENDERING_POOL_SIZE, Runtime.getRuntime().availableProcessors() * 2),
+			Long.getLong(PROPERTY_MANDELBROT_RENDERING_POOL_TTL, 30L) * 1000L);
+
+	private final Map<Key, Deque<IdleRenderer>> idleRenderers = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Renderer, Key> leasedRenderers = new IdentityHashMap<>();
+	private final int maxIdleRenderers;
+	private final long timeToLive;
+	private ScheduledExecutorService executor;
+	private int idleCount;
+
+	public RendererPool(int maxIdleRenderers, long timeToLive) {
+		this.maxIdleRenderers = maxIdleRenderers;
+		this.timeToLive = Math.max(1, timeToLive);
+	}
+
+	public synchronized Renderer acquire(ThreadFactory threadFactory, GraphicsFactory renderFactory, Tile tile) {
+		// the thread factory is part of the key, because the executor of a renderer is created once
+		final Key key = new Key(tile.tileSize(), tile.borderSize(), renderFactory.getName(), threadFactory);
+		final Deque<IdleRenderer> renderers = idleRenderers.get(key);
+		Renderer renderer = null;
+		if (renderers != null) {
+			final IdleRenderer idleRenderer = renderers.pollLast();
+			renderer = idleRenderer != null ? idleRenderer.renderer() : null;
+			if (renderers.isEmpty()) {
+				idleRenderers.remove(key);
+			}
+		}
+		if (renderer != null) {
+			idleCount -= 1;
+			renderer.setTile(tile);
+		} else {
+			renderer = new Renderer(threadFactory, renderFactory, tile);
+		}
+		leasedRenderers.put(renderer, key);
+		return renderer;
+	}
+
+	public void release(Renderer renderer) {
+		final Key key;
+		synchronized (this) {
+			key = leasedRenderers.remove(renderer);
+		}
+		if (key == null || maxIdleRenderers <= 0) {
+			renderer.dispose();
+			return;
+		}
+		try {
+			renderer.reset();
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Can't reset renderer", e);
+			renderer.dispose();
+			return;
+		}
+		final Renderer evictedRenderer;
+		synchronized (this) {
+			idleRenderers.computeIfAbsent(key, _ -> new ArrayDeque<>()).addLast(new IdleRenderer(renderer, System.currentTimeMillis()));
+			idleCount += 1;
+			evictedRenderer = idleCount > maxIdleRenderers ? evictEldest() : null;
+			if (executor == null) {
+				// the thread is created on demand and terminated when the pool is empty
+				executor = ExecutorUtils.newSingleThreadScheduledExecutor(ThreadUtils.createPlatformThreadFactory("Renderer Pool"));
+				executor.scheduleWithFixedDelay(this::evictExpired, timeToLive, timeToLive, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (evictedRenderer != null) {
+			evictedRenderer.dispose();
+		}
+	}
+
+	public void clear() {
+		final Deque<Renderer> renderers = new ArrayDeque<>();
+		final ScheduledExecutorService evictionExecutor;
+		synchronized (this) {
+			idleRenderers.values().forEach(queue -> queue.forEach(idleRenderer -> renderers.add(idleRenderer.renderer())));
+			idleRenderers.clear();
+			idleCount = 0;
+			evictionExecutor = executor;
+			executor = null;
+		}
+		if (evictionExecutor != null) {
+			evictionExecutor.shutdown();
+		}
+		renderers.forEach(Renderer::dispose);
+	}
+
+	private void evictExpired() {
+		final Deque<Renderer> renderers = new ArrayDeque<>();
+		synchronized (this) {
+			final long time = System.currentTimeMillis();
+			final Iterator<Deque<IdleRenderer>> iterator = idleRenderers.values().iterator();
+			while (iterator.hasNext()) {
+				final Deque<IdleRenderer> queue = iterator.next();
+				// renderers are appended when released, therefore the oldest ones are at the head
+				while (!queue.isEmpty() && time - queue.peekFirst().releaseTime() >= timeToLive) {
+					renderers.add(queue.pollFirst().renderer());
+					idleCount -= 1;
+				}
+				if (queue.isEmpty()) {
+					iterator.remove();
+				}
+			}
+			if (idleRenderers.isEmpty() && executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+		}
+		renderers.forEach(Renderer::dispose);
+	}
+
+	private Renderer evictEldest() {
+		final Iterator<Deque<IdleRenderer>> iterator = idleRenderers.values().iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		final Deque<IdleRenderer> renderers = iterator.next();
+		final IdleRenderer idleRenderer = renderers.pollFirst();
+		if (renderers.isEmpty()) {
+			iterator.remove();
+		}
+		idleCount -= 1;
+		return idleRenderer != null ? idleRenderer.renderer() : null;
+	}
+
+	private record Key(Size tileSize, Size borderSize, String renderFactory, ThreadFactory threadFactory) {}
+
+	private record IdleRenderer(Renderer renderer, long releaseTime) {}
+}
@@ -33,9 +33,11 @@ import com.nextbreakpoint.nextfractal.core.graphics.Point;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import com.nextbreakpoint.nextfractal.core.graphics.Tile;
 import com.nextbreakpoint.nextfractal.mandelbrot.core.MutableNumber;
+import com.nextbreakpoint.nextfractal.mandelbrot.graphics.Fractal;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.Renderer;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.RendererData;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.RendererErrors;
+import com.nextbreakpoint.nextfractal.mandelbrot.graphics.RendererStrategy;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.State;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.strategy.JuliaStrategy;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.strategy.MandelbrotStrategy;
@@ -43,6 +45,7 @@ import lombok.extern.java.Log;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
@@ -89,28 +92,29 @@ public final class XaosRenderer extends Renderer {
 	private boolean isHorizontalSymmetrySupported;
 	private final XaosRendererData xaosRendererData;
 	private boolean cacheActive;
-	private ExecutorService executor;
-	private Future<?> futureLines;
-	private Future<?> futureColumns;
-	private final Runnable redrawLinesRunnable = () -> prepareLines(true);
-	private final Runnable refreshLinesRunnable = () -> prepareLines(false);
-	private final Runnable redrawColumnsRunnable = () -> prepareColumns(true);
-	private final Runnable refreshColumnsRunnable = () -> prepareColumns(false);
+	private ExecutorService workersExecutor;
+	private Fractal[] workerFractals;
+	private RendererStrategy[] workerStrategies;
 
 	public XaosRenderer(ThreadFactory threadFactory, GraphicsFactory renderFactory, Tile tile) {
 		super(threadFactory, renderFactory, tile);
 		this.xaosRendererData = (XaosRendererData) contentRendererData;
-		if (multiThread) {
-			executor = ExecutorUtils.newSingleThreadExecutor(threadFactory);
-		}
 		if (Boolean.getBoolean(PROPERTY_MANDELBROT_RENDERING_XAOS_OVERLAPPING_ENABLED)) {
 			overlapping = true;
 		}
 	}
 	
+	@Override
+	public void init() {
+		super.init();
+		createWorkers();
+	}
+
 	@Override
 	public void dispose() {
-		ExecutorUtils.shutdown(executor);
+		ExecutorUtils.shutdown(workersExecutor);
+		workersExecutor = null;
+		workerFractals = null;
 		super.dispose();
 	}
 
@@ -178,6 +182,7 @@ public final class XaosRenderer extends Renderer {
 				contentRendererStrategy = new MandelbrotStrategy(contentRendererFractal);
 			}
 			contentRendererStrategy.prepare();
+			prepareWorkers();
 			int width = getSize().width();
 			int height = getSize().height();
 			contentRendererData.setSize(width, height, contentRendererFractal.getStateSize());
@@ -196,26 +201,13 @@ public final class XaosRenderer extends Renderer {
 				log.fine("Vertical symetry supported = " + isVerticalSymmetrySupported);
 				log.fine("Horizontal symetry supported = " + isHorizontalSymmetrySupported);
 			}
-			if (executor != null && XaosConstants.USE_MULTITHREAD && !XaosConstants.DUMP_XAOS) {
-				if (redraw) {
-					futureLines = executor.submit(redrawLinesRunnable);
-//					futureColumns = executor.submit(redrawColumnsRunnable);
-				} else {
-					futureLines = executor.submit(refreshLinesRunnable);
-//					futureColumns = executor.submit(refreshColumnsRunnable);
-				}
+			if (isWorkersEnabled()) {
+				final Future<?> futureColumns = workersExecutor.submit(() -> prepareColumns(redraw));
+				prepareLines(redraw);
+				futureColumns.get();
 			} else {
 				prepareColumns(redraw);
-//				prepareLines(redraw);
-			}
-			prepareLines(redraw);
-			if (executor != null && XaosConstants.USE_MULTITHREAD && !XaosConstants.DUMP_XAOS) {
-				if (futureLines != null) {
-					futureLines.get();
-				}
-//				if (futureColumns != null) {
-//					futureColumns.get();
-//				}
+				prepareLines(redraw);
 			}
 			if (XaosConstants.PRINT_REALLOCTABLE) {
 				log.fine("ReallocTable X:");
@@ -271,8 +263,8 @@ public final class XaosRenderer extends Renderer {
 			stepy = makeReallocTable(xaosRendererData.reallocX(), xaosRendererData.dynamicX(), beginx, endx, xaosRendererData.positionX(), !cacheActive);
 		}
 		final double symy = contentRendererStrategy.getHorizontalSymmetryPoint();
-		if (isVerticalSymmetrySupported && contentRendererStrategy.isVerticalSymmetrySupported() && (!((beginx > symy) || (symy > endx)))) {
-			prepareSymmetry(xaosRendererData.reallocY(), (int) ((symy - beginx) / stepy), symy, stepy);
+		if (isHorizontalSymmetrySupported && contentRendererStrategy.isHorizontalSymmetrySupported() && (!((beginx > symy) || (symy > endx)))) {
+			prepareSymmetry(xaosRendererData.reallocX(), (int) ((symy - beginx) / stepy), symy, stepy);
 		}
 	}
 
@@ -994,7 +986,7 @@ public final class XaosRenderer extends Renderer {
 		}
 	}
 
-	private void processReallocTable(final boolean continuous, final boolean refresh) {
+	private void processReallocTable(final boolean continuous, final boolean refresh) throws ExecutionException, InterruptedException {
 		move();
 		int[] offset = prepareOffset();
 		if (refresh) {
@@ -1045,7 +1037,7 @@ public final class XaosRenderer extends Renderer {
 		}
 	}
 
-	private void renderReallocTable(boolean continuous, int[] offset) {
+	private void renderReallocTable(boolean continuous, int[] offset) throws ExecutionException, InterruptedException {
 		if (XaosConstants.DUMP) {
 			log.fine("Process realloc...");
 		}
@@ -1068,28 +1060,29 @@ public final class XaosRenderer extends Renderer {
 				tocalcy++;
 			}
 		}
+		final XaosRealloc[] batch = xaosRendererData.batch();
+		int count;
 		long oldTime = System.currentTimeMillis();
 		for (s = 0; !interrupted && s < XaosConstants.STEPS; s++) {
+			// lines (and then columns) of the same step are at least STEPS apart, therefore they can be rendered concurrently
+			count = 0;
 			tmpRealloc = xaosRendererData.reallocY();
-			for (i = offset[s]; !interrupted && i < tmpRealloc.length; i += XaosConstants.STEPS) {
+			for (i = offset[s]; i < tmpRealloc.length; i += XaosConstants.STEPS) {
 				if (tmpRealloc[i].calculate || !tmpRealloc[i].isCached || tmpRealloc[i].isFilled) {
-					renderLine(tmpRealloc[i], xaosRendererData.reallocX(), xaosRendererData.reallocY());
+					batch[count++] = tmpRealloc[i];
 					tocalcy -= 1;
 				}
-				if (interrupted) {
-					break;
-				}
 			}
+			renderBatch(batch, count);
+			count = 0;
 			tmpRealloc = xaosRendererData.reallocX();
-			for (i = offset[s]; !interrupted && i < tmpRealloc.length; i += XaosConstants.STEPS) {
+			for (i = offset[s]; i < tmpRealloc.length; i += XaosConstants.STEPS) {
 				if (tmpRealloc[i].calculate || !tmpRealloc[i].isCached || tmpRealloc[i].isFilled) {
-					renderColumn(tmpRealloc[i], xaosRendererData.reallocX(), xaosRendererData.reallocY());
+					batch[count++] = tmpRealloc[i];
 					tocalcx -= 1;
 				}
-				if (interrupted) {
-					break;
-				}
 			}
+			renderBatch(batch, count);
 			long newTime = System.currentTimeMillis();
 			if (!interrupted && (continuous || newTime - oldTime > 500)) {
 				tmpRealloc = xaosRendererData.reallocY();
@@ -1222,17 +1215,23 @@ public final class XaosRenderer extends Renderer {
 		}
 	}
 
-	private void processQueue(final int size) {
+	private void processQueue(final int size) throws ExecutionException, InterruptedException {
 		if (XaosConstants.DUMP) {
 			log.fine("Process queue...");
 		}
-		for (int i = 0; i < size; i++) {
-			if (xaosRendererData.queue()[i].line) {
-				renderLine(xaosRendererData.queue()[i], xaosRendererData.reallocX(), xaosRendererData.reallocY());
-			}
-			else {
-				renderColumn(xaosRendererData.queue()[i], xaosRendererData.reallocX(), xaosRendererData.reallocY());
-			}
+		final XaosRealloc[] queue = xaosRendererData.queue();
+		final XaosRealloc[] batch = xaosRendererData.batch();
+		final int maxBatchSize = workerStrategies.length * 4;
+		int i = 0;
+		while (i < size) {
+			// consecutive entries are batched only while they can't affect each other,
+			// therefore the result is the same we would have processing the queue in order
+			final boolean line = queue[i].line;
+			int count = 0;
+			while (i < size && count < maxBatchSize && queue[i].line == line && !isNeighbour(batch, count, queue[i])) {
+				batch[count++] = queue[i++];
+			}
+			renderBatch(batch, count);
 			if (interrupted) {
 				break;
 			}
@@ -1240,6 +1239,90 @@ public final class XaosRenderer extends Renderer {
 		}
 	}
 
+	private boolean isNeighbour(final XaosRealloc[] batch, final int count, final XaosRealloc realloc) {
+		for (int i = 0; i < count; i++) {
+			if (Math.abs(batch[i].pos - realloc.pos) <= XaosConstants.GUESS_RANGE + 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void renderBatch(final XaosRealloc[] batch, final int count) throws ExecutionException, InterruptedException {
+		final int tasks = Math.min(count, workerStrategies.length);
+		if (tasks <= 1) {
+			renderRealloc(batch, 0, 1, count, workerStrategies[0]);
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<>(tasks);
+		for (int t = 0; t < tasks; t++) {
+			final int first = t;
+			final RendererStrategy strategy = workerStrategies[t];
+			futures.add(workersExecutor.submit(() -> renderRealloc(batch, first, tasks, count, strategy)));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+	}
+
+	private void renderRealloc(final XaosRealloc[] batch, final int first, final int stride, final int count, final RendererStrategy strategy) {
+		for (int i = first; i < count && !interrupted; i += stride) {
+			if (batch[i].line) {
+				renderLine(batch[i], xaosRendererData.reallocX(), xaosRendererData.reallocY(), strategy);
+			} else {
+				renderColumn(batch[i], xaosRendererData.reallocX(), xaosRendererData.reallocY(), strategy);
+			}
+		}
+	}
+
+	private boolean isWorkersEnabled() {
+		return workersExecutor != null && workerFractals != null && XaosConstants.USE_MULTITHREAD && !XaosConstants.DUMP_XAOS;
+	}
+
+	private void createWorkers() {
+		workerFractals = null;
+		if (!multiThread || workers <= 1 || orbitFactory == null || colorFactory == null) {
+			return;
+		}
+		try {
+			final Fractal[] fractals = new Fractal[workers];
+			for (int i = 0; i < workers; i++) {
+				final Fractal fractal = new Fractal();
+				fractal.setOrbit(orbitFactory.create());
+				fractal.setColor(colorFactory.create());
+				fractal.initialize();
+				fractals[i] = fractal;
+			}
+			if (workersExecutor == null) {
+				workersExecutor = ExecutorUtils.newFixedThreadPool(workers, threadFactory);
+			}
+			workerFractals = fractals;
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Can't create workers", e);
+		}
+	}
+
+	private void prepareWorkers() {
+		if (!isWorkersEnabled()) {
+			workerStrategies = new RendererStrategy[] { contentRendererStrategy };
+			return;
+		}
+		workerStrategies = new RendererStrategy[workerFractals.length];
+		for (int i = 0; i < workerFractals.length; i++) {
+			final Fractal fractal = workerFractals[i];
+			fractal.getOrbit().setTime(time);
+			fractal.getColor().setTime(time);
+			fractal.clearScope();
+			fractal.setPoint(point);
+			if (julia) {
+				workerStrategies[i] = new JuliaStrategy(fractal);
+			} else {
+				workerStrategies[i] = new MandelbrotStrategy(fractal);
+			}
+			workerStrategies[i].prepare();
+		}
+	}
+
 	private void doSymetry(final XaosRealloc[] reallocX, final XaosRealloc[] reallocY) {
 		if (XaosConstants.DUMP) {
 			log.fine("Do symetry...");
@@ -1417,7 +1500,7 @@ public final class XaosRenderer extends Renderer {
 		}
 	}
 
-	private void renderLine(final XaosRealloc realloc, final XaosRealloc[] reallocX, final XaosRealloc[] reallocY) {
+	private void renderLine(final XaosRealloc realloc, final XaosRealloc[] reallocX, final XaosRealloc[] reallocY, final RendererStrategy strategy) {
 		if (XaosConstants.PRINT_CALCULATE) {
 			log.fine("Calculate line " + realloc.pos);
 		}
@@ -1465,7 +1548,7 @@ public final class XaosRenderer extends Renderer {
 				if (!reallocX[k].dirty) {
 					z.set(xaosRendererData.point());
 					w.set(reallocX[k].position, position);
-					c = contentRendererStrategy.renderPoint(p, z, w);
+					c = strategy.renderPoint(p, z, w);
 					xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 					xaosRendererData.setPoint(offset, p);
 					if (XaosConstants.SHOW_CALCULATE) {
@@ -1516,7 +1599,7 @@ public final class XaosRenderer extends Renderer {
 						else {
 							z.set(xaosRendererData.point());
 							w.set(reallocX[k].position, position);
-							c = contentRendererStrategy.renderPoint(p, z, w);
+							c = strategy.renderPoint(p, z, w);
 							xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 							xaosRendererData.setPoint(offset, p);
 							if (XaosConstants.SHOW_CALCULATE) {
@@ -1527,7 +1610,7 @@ public final class XaosRenderer extends Renderer {
 					else {
 						z.set(xaosRendererData.point());
 						w.set(reallocX[k].position, position);
-						c = contentRendererStrategy.renderPoint(p, z, w);
+						c = strategy.renderPoint(p, z, w);
 						xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 						xaosRendererData.setPoint(offset, p);
 						if (XaosConstants.SHOW_CALCULATE) {
@@ -1550,7 +1633,7 @@ public final class XaosRenderer extends Renderer {
 		realloc.isCached = cacheActive;
 	}
 
-	private void renderColumn(final XaosRealloc realloc, final XaosRealloc[] reallocX, final XaosRealloc[] reallocY) {
+	private void renderColumn(final XaosRealloc realloc, final XaosRealloc[] reallocX, final XaosRealloc[] reallocY, final RendererStrategy strategy) {
 		if (XaosConstants.PRINT_CALCULATE) {
 			log.fine("Calculate column " + realloc.pos);
 		}
@@ -1600,7 +1683,7 @@ public final class XaosRenderer extends Renderer {
 				if (!reallocY[k].dirty) {
 					z.set(xaosRendererData.point());
 					w.set(position, reallocY[k].position);
-					c = contentRendererStrategy.renderPoint(p, z, w);
+					c = strategy.renderPoint(p, z, w);
 					xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 					xaosRendererData.setPoint(offset, p);
 					if (XaosConstants.SHOW_CALCULATE) {
@@ -1653,7 +1736,7 @@ public final class XaosRenderer extends Renderer {
 						else {
 							z.set(xaosRendererData.point());
 							w.set(position, reallocY[k].position);
-							c = contentRendererStrategy.renderPoint(p, z, w);
+							c = strategy.renderPoint(p, z, w);
 							xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 							xaosRendererData.setPoint(offset, p);
 							if (XaosConstants.SHOW_CALCULATE) {
@@ -1664,7 +1747,7 @@ public final class XaosRenderer extends Renderer {
 					else {
 						z.set(xaosRendererData.point());
 						w.set(position, reallocY[k].position);
-						c = contentRendererStrategy.renderPoint(p, z, w);
+						c = strategy.renderPoint(p, z, w);
 						xaosRendererData.setPixel(offset, opaque ? 0xFF000000 | c : c);
 						xaosRendererData.setPoint(offset, p);
 						if (XaosConstants.SHOW_CALCULATE) {
@@ -58,6 +58,7 @@ class XaosRendererData extends RendererData {
 	private XaosChunkTable moveTable;
 	private XaosChunkTable fillTable;
 	private XaosRealloc[] queue;
+	private XaosRealloc[] batch;
 
 	@Override
 	public void free() {
@@ -68,6 +69,7 @@ class XaosRendererData extends RendererData {
 		moveTable = null;
 		fillTable = null;
 		queue = null;
+		batch = null;
 		super.free();
 	}
 
@@ -81,6 +83,7 @@ class XaosRendererData extends RendererData {
 		moveTable = new XaosChunkTable(width);
 		fillTable = new XaosChunkTable(width);
 		queue = new XaosRealloc[reallocX.length + reallocY.length];
+		batch = new XaosRealloc[reallocX.length + reallocY.length];
 		for (int i = 0; i < width; i++) {
 			reallocX[i] = new XaosRealloc(false);
 			reallocX[i].pos = i;
@@ -119,6 +122,10 @@ class XaosRendererData extends RendererData {
 		return queue;
 	}
 
+	public XaosRealloc[] batch() {
+		return batch;
+	}
+
 	public int[] position() {
 		return position;
 	}
@@ -34,6 +34,7 @@ import com.nextbreakpoint.nextfractal.core.graphics.AffineTransform;
 import com.nextbreakpoint.nextfractal.core.graphics.GraphicsContext;
 import com.nextbreakpoint.nextfractal.core.graphics.GraphicsFactory;
 import com.nextbreakpoint.nextfractal.core.graphics.GraphicsUtils;
+import com.nextbreakpoint.nextfractal.core.graphics.ImagePool;
 import com.nextbreakpoint.nextfractal.core.graphics.Point;
 import com.nextbreakpoint.nextfractal.core.graphics.Size;
 import com.nextbreakpoint.nextfractal.core.graphics.Tile;
@@ -46,25 +47,29 @@ import com.nextbreakpoint.nextfractal.mandelbrot.dsl.DSLParser;
 import com.nextbreakpoint.nextfractal.mandelbrot.dsl.DSLParserResult;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.Region;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.Renderer;
+import com.nextbreakpoint.nextfractal.mandelbrot.graphics.RendererPool;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.View;
 import lombok.extern.java.Log;
 
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 
+import static com.nextbreakpoint.nextfractal.mandelbrot.module.SystemProperties.PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING;
+import static com.nextbreakpoint.nextfractal.mandelbrot.module.SystemProperties.PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING_THRESHOLD;
+
 @Log
 public class MandelbrotImageComposer implements ImageComposer {
     private boolean aborted;
     private final boolean opaque;
     private final Tile tile;
     private final ThreadFactory threadFactory;
+    private BufferedImage image;
 
     public MandelbrotImageComposer(ThreadFactory threadFactory, Tile tile, boolean opaque) {
         this.tile = tile;
@@ -76,9 +81,11 @@ public class MandelbrotImageComposer implements ImageComposer {
     public IntBuffer renderImage(String script, Metadata data) {
         MandelbrotMetadata metadata = (MandelbrotMetadata) data;
         Size suggestedSize = tile.tileSize();
-        BufferedImage image = new BufferedImage(suggestedSize.width(), suggestedSize.height(), BufferedImage.TYPE_INT_ARGB);
-        IntBuffer buffer = IntBuffer.wrap(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+        release();
+        image = ImagePool.getSharedPool().acquire(suggestedSize.width(), suggestedSize.height());
+        IntBuffer buffer = IntBuffer.wrap(ImagePool.getPixels(image));
         Graphics2D g2d = null;
+        Renderer renderer = null;
         try {
             g2d = image.createGraphics();
             g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
@@ -92,7 +99,7 @@ public class MandelbrotImageComposer implements ImageComposer {
             final Orbit orbit = parserResult.orbitClassFactory().create();
             final Color color = parserResult.colorClassFactory().create();
             GraphicsFactory renderFactory = GraphicsUtils.findGraphicsFactory("Java2D");
-            Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
+            renderer = RendererPool.getSharedPool().acquire(threadFactory, renderFactory, tile);
             if (metadata.getOptions().isShowPreview() && !metadata.isJulia()) {
                 int previewWidth = (int) Math.rint(tile.imageSize().width() * metadata.getOptions().getPreviewSize().x());
                 int previewHeight = (int) Math.rint(tile.imageSize().height() * metadata.getOptions().getPreviewSize().y());
@@ -103,6 +110,8 @@ public class MandelbrotImageComposer implements ImageComposer {
                 renderer.setPreviewTile(new Tile(tile.imageSize(), tileSize, tileOffset, new Size(0, 0)));
             }
             renderer.setOpaque(opaque);
+            renderer.setSupersampling(Integer.getInteger(PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING, 1));
+            renderer.setSupersamplingThreshold(Integer.getInteger(PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING_THRESHOLD, 16));
             Double4D translation = metadata.getTranslation();
             Double4D rotation = metadata.getRotation();
             Double4D scale = metadata.getScale();
@@ -146,6 +155,9 @@ public class MandelbrotImageComposer implements ImageComposer {
             log.log(Level.WARNING, "Can't render image", e);
             aborted = true;
         } finally {
+            if (renderer != null) {
+                RendererPool.getSharedPool().release(renderer);
+            }
             if (g2d != null) {
                 g2d.dispose();
             }
@@ -181,6 +193,14 @@ public class MandelbrotImageComposer implements ImageComposer {
         return states;
     }
 
+    @Override
+    public void release() {
+        if (image != null) {
+            ImagePool.getSharedPool().release(image);
+            image = null;
+        }
+    }
+
     @Override
     public Size getSize() {
         return tile.tileSize();
@@ -39,6 +39,7 @@ import com.nextbreakpoint.nextfractal.mandelbrot.core.Orbit;
 import com.nextbreakpoint.nextfractal.mandelbrot.dsl.DSLParser;
 import com.nextbreakpoint.nextfractal.mandelbrot.dsl.DSLParserResult;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.Renderer;
+import com.nextbreakpoint.nextfractal.mandelbrot.graphics.RendererPool;
 import com.nextbreakpoint.nextfractal.mandelbrot.graphics.View;
 import lombok.extern.java.Log;
 
@@ -69,12 +70,13 @@ public class MandelbrotImageGenerator implements ImageGenerator {
 		int[] pixels = new int[suggestedSize.width() * suggestedSize.height()];
 		Arrays.fill(pixels, 0xFF000000);
 		IntBuffer buffer = IntBuffer.wrap(pixels);
+		Renderer renderer = null;
 		try {
 			final DSLParser parser = new DSLParser(DSLParser.getPackageName(), DSLParser.getClassName());
 			final DSLParserResult parserResult = parser.parse(script);
 			Orbit orbit = parserResult.orbitClassFactory().create();
 			Color color = parserResult.colorClassFactory().create();
-			Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
+			renderer = RendererPool.getSharedPool().acquire(threadFactory, renderFactory, tile);
 			renderer.setOpaque(opaque);
 			Double4D translation = metadata.getTranslation();
 			Double4D rotation = metadata.getRotation();
@@ -104,6 +106,10 @@ public class MandelbrotImageGenerator implements ImageGenerator {
 		} catch (Throwable e) {
 			log.log(Level.WARNING, "Can't render image", e);
 			aborted = true;
+		} finally {
+			if (renderer != null) {
+				RendererPool.getSharedPool().release(renderer);
+			}
 		}
 		return buffer;
 	}
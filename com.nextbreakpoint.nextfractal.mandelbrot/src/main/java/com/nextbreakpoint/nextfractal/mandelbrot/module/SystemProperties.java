@@ -30,6 +30,10 @@ public interface SystemProperties {
     String PROPERTY_MANDELBROT_RENDERING_STRATEGY_OPTIMISATION_DISABLED = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.strategy.optimisation.disabled";
     String PROPERTY_MANDELBROT_RENDERING_STRATEGY_VIRTUAL_THREADS_ENABLED = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.strategy.virtual.threads.enabled";
     String PROPERTY_MANDELBROT_RENDERING_XAOS_OVERLAPPING_ENABLED = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.xaos.overlapping.enabled";
+    String PROPERTY_MANDELBROT_RENDERING_POOL_SIZE = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.pool.size";
+    String PROPERTY_MANDELBROT_RENDERING_POOL_TTL = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.pool.ttl";
+    String PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.supersampling";
+    String PROPERTY_MANDELBROT_RENDERING_SUPERSAMPLING_THRESHOLD = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.supersampling.threshold";
     String PROPERTY_MANDELBROT_RENDERING_ROWS = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.rows";
     String PROPERTY_MANDELBROT_RENDERING_COLS = "com.nextbreakpoint.nextfractal.mandelbrot.module.rendering.cols";
 }
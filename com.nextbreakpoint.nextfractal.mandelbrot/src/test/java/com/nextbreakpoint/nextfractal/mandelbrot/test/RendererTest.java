@@ -17,6 +17,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Fail.fail;
@@ -61,6 +62,107 @@ public class RendererTest {
 		}
 	}
 	
+	@Test
+	public void testProgressiveProgress() {
+		PlatformThreadFactory threadFactory = new PlatformThreadFactory("Test", false, Thread.MIN_PRIORITY);
+		GraphicsFactory renderFactory = GraphicsUtils.findGraphicsFactory("Java2D");
+		Point tileOffset = new Point(0, 0);
+		Size borderSize = new Size(0, 0);
+		Size tileSize = new Size(100, 100);
+		Tile tile = new Tile(tileSize, tileSize, tileOffset, borderSize);
+		Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
+		try {
+			TestOrbit orbit = new TestOrbit();
+			TestColor color = new TestColor();
+			Scope scope = new Scope();
+			orbit.setScope(scope);
+			color.setScope(scope);
+			renderer.setOrbit(orbit);
+			renderer.setColor(color);
+			renderer.setProgressive(true);
+			renderer.init();
+			renderer.setContentRegion(renderer.getInitialRegion());
+			List<Float> output = new ArrayList<>();
+			renderer.setDelegate((progress, errors) -> output.add(progress));
+			renderer.runTask();
+			renderer.waitForTask();
+			final float[] expected = {0.0f, 0.0625f, 0.25f, 1.0f};
+			assertThat(output).hasSize(expected.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertThat(output.get(i)).isEqualTo(expected[i], Offset.offset(0.01f));
+			}
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	@Test
+	public void testProgressiveImage() {
+		int[] expected = renderImage(false, new AtomicInteger());
+		int[] actual = renderImage(true, new AtomicInteger());
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	@Test
+	public void testProgressiveSamples() {
+		AtomicInteger samples = new AtomicInteger();
+		renderImage(true, samples);
+		// the samples of the coarse passes are kept, therefore every pixel is computed once
+		assertThat(samples.get()).isEqualTo(100 * 100);
+	}
+
+	private static int[] renderImage(boolean progressive, AtomicInteger samples) {
+		PlatformThreadFactory threadFactory = new PlatformThreadFactory("Test", false, Thread.MIN_PRIORITY);
+		GraphicsFactory renderFactory = GraphicsUtils.findGraphicsFactory("Java2D");
+		Point tileOffset = new Point(0, 0);
+		Size borderSize = new Size(0, 0);
+		Size tileSize = new Size(100, 100);
+		Tile tile = new Tile(tileSize, tileSize, tileOffset, borderSize);
+		Renderer renderer = new Renderer(threadFactory, renderFactory, tile);
+		try {
+			Scope scope = new Scope();
+			scope.addVariable(0);
+			PositionOrbit orbit = new PositionOrbit(samples);
+			PositionColor color = new PositionColor();
+			orbit.setScope(scope);
+			color.setScope(scope);
+			renderer.setOrbit(orbit);
+			renderer.setColor(color);
+			renderer.setProgressive(progressive);
+			renderer.init();
+			renderer.setContentRegion(renderer.getInitialRegion());
+			renderer.runTask();
+			renderer.waitForTask();
+			int[] pixels = new int[100 * 100];
+			renderer.getPixels(pixels);
+			return pixels;
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	private static class PositionOrbit extends TestOrbit {
+		private final AtomicInteger samples;
+
+		public PositionOrbit(AtomicInteger samples) {
+			this.samples = samples;
+		}
+
+		@Override
+		public void render(List<ComplexNumber[]> states) {
+			samples.incrementAndGet();
+			getVariable(0).set(getW());
+		}
+	}
+
+	private static class PositionColor extends TestColor {
+		@Override
+		public void render() {
+			MutableNumber w = getVariable(0);
+			setColor(new float[] { 1f, (float) Math.abs(Math.sin(w.r() * 5)), (float) Math.abs(Math.sin(w.i() * 5)), 0.5f });
+		}
+	}
+
 	private static class TestOrbit extends Orbit {
 		@Override
 		public void init() {
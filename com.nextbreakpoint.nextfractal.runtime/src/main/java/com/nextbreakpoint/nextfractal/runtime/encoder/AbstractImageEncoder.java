@@ -35,6 +35,8 @@ import lombok.extern.java.Log;
 import java.io.File;
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Objects;
 import java.util.logging.Level;
 
@@ -74,11 +76,22 @@ public abstract class AbstractImageEncoder implements Encoder {
 
 	@Override
 	public void encode(EncoderHandle handle, int frameIndex, int repeatFrameCount, int totalFrameCount) throws EncoderException {
-		((ImageEncoderHandle) handle).encode();
+		((ImageEncoderHandle) handle).encode(frameIndex, repeatFrameCount);
 	}
 
 	protected abstract int getFormat();
 
+	protected File getFrameFile(File path, int frameIndex) {
+		if (!isSequenceSupported()) {
+			return path;
+		}
+		final String name = path.getName();
+		final int index = name.lastIndexOf('.');
+		final String baseName = index > 0 ? name.substring(0, index) : name;
+		final String suffix = index > 0 ? name.substring(index) : getSuffix();
+		return new File(path.getAbsoluteFile().getParentFile(), "%s-%05d%s".formatted(baseName, frameIndex, suffix));
+	}
+
 	protected boolean isAlphaSupported() {
 		return false;
 	}
@@ -96,7 +109,10 @@ public abstract class AbstractImageEncoder implements Encoder {
 			log.info("Session %s: Encoding image...".formatted(context.getSessionId()));
 		}
 
-		public void encode() throws EncoderException {
+		public void encode(int frameIndex, int repeatFrameCount) throws EncoderException {
+			// frames of a sequence are encoded concurrently, therefore they don't report progress,
+			// which is reported by the export session when each frame completes
+			final EncoderDelegate progressDelegate = isSequenceSupported() ? null : delegate;
 			try (var arena = Arena.ofConfined()) {
 				final int channels = isAlphaSupported() ? 4 : 3;
 				long time = System.currentTimeMillis();
@@ -125,18 +141,25 @@ public abstract class AbstractImageEncoder implements Encoder {
 						if (y % 100 == 0) {
 							log.info("Session %s: Completed %.0f%%".formatted(context.getSessionId(), ((y + 1f) / context.getImageHeight()) * 100f));
 						}
-						if (delegate != null && (y % 10 == 0)) {
-							delegate.didProgressChanged(((y + 1f) / context.getImageHeight()) * 100f);
+						if (progressDelegate != null && (y % 10 == 0)) {
+							progressDelegate.didProgressChanged(((y + 1f) / context.getImageHeight()) * 100f);
 						}
 						Thread.yield();
 					}
 					if (delegate == null || !delegate.isInterrupted()) {
-						final var fileName = arena.allocateFrom(path.getAbsolutePath());
+						final File file = getFrameFile(path, frameIndex);
+						final var fileName = arena.allocateFrom(file.getAbsolutePath());
 						FreeImage_Save(getFormat(), pBitmap, fileName, 0);
+						if (isSequenceSupported()) {
+							// repeated frames are identical, therefore they are copied instead of encoded again
+							for (int count = 1; count < repeatFrameCount; count++) {
+								Files.copy(file.toPath(), getFrameFile(path, frameIndex + count).toPath(), StandardCopyOption.REPLACE_EXISTING);
+							}
+						}
 						time = System.currentTimeMillis() - time;
 						log.info("Session %s: Completed %.0f%%".formatted(context.getSessionId(), 100f));
-						if (delegate != null) {
-							delegate.didProgressChanged(100f);
+						if (progressDelegate != null) {
+							progressDelegate.didProgressChanged(100f);
 						}
 						if (log.isLoggable(Level.INFO)) {
 							log.info("Session %s: Image exported (total time %3.2fs)".formatted(context.getSessionId(), time / 1000.0d));
@@ -31,255 +31,351 @@ import com.nextbreakpoint.nextfractal.core.export.ExportService;
 import com.nextbreakpoint.nextfractal.core.export.ExportSession;
 import com.nextbreakpoint.nextfractal.core.export.ExportSessionHandle;
 import com.nextbreakpoint.nextfractal.core.export.ExportSessionState;
+import com.nextbreakpoint.nextfractal.core.export.ExportSessionStatistics;
+import com.nextbreakpoint.nextfractal.core.graphics.ImagePool;
 import lombok.extern.java.Log;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.COMPLETED;
 import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.DISPATCHED;
 import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.FAILED;
 import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.INTERRUPTED;
+import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.READY;
 import static com.nextbreakpoint.nextfractal.core.export.ExportSessionState.SUSPENDED;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_ENCODE_QUEUE_SIZE;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_ENCODE_WORKERS;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_FRAME_MEMORY_BUDGET;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_FRAME_STORE_SIZE;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_MEMORY_BUDGET;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_TILE_AUTOTUNE;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_WORKERS;
 
 @Log
 public class DefaultExportService implements ExportService {
 	private static final Set<ExportSessionState> SESSION_STATES = Set.of(COMPLETED, FAILED, INTERRUPTED);
+	// finished sessions are kept for a while, so that their final state remains visible
+	private static final long TERMINATE_DELAY = 10000;
+	private static final long MEGABYTE = 1024L * 1024L;
 
-	private final List<ExecutorService> executors = new ArrayList<>();
-	private final Map<String, ExportSessionHandle> sessions = new HashMap<>();
-	private final LinkedBlockingQueue<ExportSessionHandle> scheduleQueue = new LinkedBlockingQueue<>();
-	private final LinkedBlockingQueue<ExportSessionHandle> dispatchQueue = new LinkedBlockingQueue<>();
-	private final LinkedBlockingQueue<ExportSessionHandle> removeQueue = new LinkedBlockingQueue<>();
-	private final ReentrantLock lock = new ReentrantLock();
+	private final ConcurrentMap<String, ExportSessionHandle> sessions = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ExportSessionTask> tasks = new ConcurrentHashMap<>();
+	private final ExportRenderer exportRenderer;
 	private final ExecutorService executor;
-	private ExportServiceDelegate delegate;
+	private final TileScheduler scheduler;
+	private final ExecutorService encodeExecutor;
+	private final ExportMemoryBudget memoryBudget;
+	private final ExportMemoryEstimator memoryEstimator;
+	private final Deque<PendingSession> pendingSessions = new ArrayDeque<>();
+	private final ConcurrentMap<String, ExportMemoryBudget.Reservation> suspendedReservations = new ConcurrentHashMap<>();
+	private volatile ExportServiceDelegate delegate;
 
 	public DefaultExportService(ExportRenderer exportRenderer) {
-        executors.add(ExecutorUtils.newFixedThreadPool(8, ThreadUtils.createVirtualThreadFactory("Export Session")));
-        executors.add(ExecutorUtils.newFixedThreadPool(8, ThreadUtils.createVirtualThreadFactory("Export Session")));
-        executors.add(ExecutorUtils.newFixedThreadPool(8, ThreadUtils.createVirtualThreadFactory("Export Session")));
-        executors.add(ExecutorUtils.newFixedThreadPool(8, ThreadUtils.createVirtualThreadFactory("Export Session")));
+		this.exportRenderer = exportRenderer;
+		// tile rendering is bound to the processors, therefore all sessions share one pool of platform threads
+		scheduler = new TileScheduler(Integer.getInteger(PROPERTY_EXPORT_WORKERS, Runtime.getRuntime().availableProcessors()), ThreadUtils.createPlatformThreadFactory("Export Tile"));
 		executor = ExecutorUtils.newThreadPerTaskExecutor(ThreadUtils.createVirtualThreadFactory("Export Service"));
-		executor.submit(new DispatchSessionsTask(this::pollScheduleQueue, this::dispatchSession));
-		executor.submit(new RemoveSessionsTask(this::pollRemoveQueue, this::removeSession));
-		executor.submit(new ExportSessionTask(executors.get(0), this::pollDispatchQueue, this::updateSession, exportRenderer));
-		executor.submit(new ExportSessionTask(executors.get(1), this::pollDispatchQueue, this::updateSession, exportRenderer));
-		executor.submit(new ExportSessionTask(executors.get(2), this::pollDispatchQueue, this::updateSession, exportRenderer));
-		executor.submit(new ExportSessionTask(executors.get(3), this::pollDispatchQueue, this::updateSession, exportRenderer));
+		// frames of image sequences are encoded on a separate pool, so that encoding doesn't delay rendering
+		final int encodeWorkers = Integer.getInteger(PROPERTY_EXPORT_ENCODE_WORKERS, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		encodeExecutor = ExecutorUtils.newFixedThreadPool(encodeWorkers, ThreadUtils.createPlatformThreadFactory("Export Encoder"));
+		// sessions which don't fit the memory budget wait until the running sessions release their memory
+		memoryBudget = new ExportMemoryBudget(Long.getLong(PROPERTY_EXPORT_MEMORY_BUDGET, Runtime.getRuntime().maxMemory() / 2 / MEGABYTE) * MEGABYTE);
+		final TileSizeTuner tileSizeTuner = Boolean.parseBoolean(System.getProperty(PROPERTY_EXPORT_TILE_AUTOTUNE, "true")) ? new TileSizeTuner(scheduler.getWorkers()) : null;
+		memoryEstimator = new ExportMemoryEstimator(scheduler.getWorkers(), encodeWorkers, Integer.getInteger(PROPERTY_EXPORT_ENCODE_QUEUE_SIZE, 4),
+				Long.getLong(PROPERTY_EXPORT_FRAME_MEMORY_BUDGET, 512L) * MEGABYTE, Long.getLong(PROPERTY_EXPORT_FRAME_STORE_SIZE, 256L) * MEGABYTE, tileSizeTuner);
 	}
 
-	public synchronized void setDelegate(ExportServiceDelegate delegate) {
+	public void setDelegate(ExportServiceDelegate delegate) {
 		this.delegate = delegate;
 	}
 
 	public final void shutdown() {
+		synchronized (pendingSessions) {
+			pendingSessions.clear();
+		}
+		tasks.values().forEach(ExportSessionTask::cancel);
 		ExecutorUtils.shutdown(executor);
-		executors.forEach(ExecutorUtils::shutdown);
+		ExecutorUtils.shutdown(encodeExecutor);
+		scheduler.shutdown();
 	}
 
 	public int getSessionCount() {
 		return sessions.size();
 	}
 
-	public final void startSession(ExportSession session) {
-		try {
-			lock.lock();
+	public long getMemoryUsage() {
+		return memoryBudget.getUsage();
+	}
 
-			if (sessions.containsKey(session.getSessionId())) {
-				log.log(Level.WARNING, "Session {0} exists already", session.getSessionId());
-				return;
-			}
+	public long getMemoryBudget() {
+		return memoryBudget.getCapacity();
+	}
+
+	public Optional<ExportSessionStatistics> getStatistics(ExportSession session) {
+		return Optional.ofNullable(sessions.get(session.getSessionId())).map(ExportSessionHandle::getStatistics);
+	}
 
-			sessions.put(session.getSessionId(), new ExportSessionHandle(session));
+	public final void startSession(ExportSession session) {
+		final ExportSessionHandle sessionHandle = new ExportSessionHandle(session);
 
-			scheduleQueue.add(sessions.get(session.getSessionId()));
-		} finally {
-			lock.unlock();
+		if (sessions.putIfAbsent(session.getSessionId(), sessionHandle) != null) {
+			log.log(Level.WARNING, "Session {0} exists already", session.getSessionId());
+			return;
 		}
+
+		dispatchSession(sessionHandle, READY);
 	}
 
 	public final void stopSession(ExportSession session) {
-		try {
-			lock.lock();
+		final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
 
-			final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
+		if (sessionHandle == null) {
+			log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
+			return;
+		}
 
-			if (sessionHandle == null) {
-				log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
-				return;
+		if (removePendingSession(sessionHandle) && sessionHandle.getState() == READY) {
+			synchronized (sessionHandle) {
+				sessionHandle.setCancelled(true);
+				sessionHandle.setState(INTERRUPTED);
 			}
 
+			updateSession(sessionHandle);
+			return;
+		}
+
+		synchronized (sessionHandle) {
 			if (sessionHandle.getState() == DISPATCHED) {
 				sessionHandle.setCancelled(true);
+				cancelTask(sessionHandle);
 			}
 
 			if (sessionHandle.getState() == SUSPENDED) {
-				executor.submit(new DelayedRemove(sessionHandle));
+				scheduleTerminate(sessionHandle);
 			}
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	public final void suspendSession(ExportSession session) {
-		try {
-			lock.lock();
-
-			final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
+		final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
 
-			if (sessionHandle == null) {
-				log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
-				return;
-			}
+		if (sessionHandle == null) {
+			log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
+			return;
+		}
 
+		synchronized (sessionHandle) {
 			if (sessionHandle.getState() == DISPATCHED) {
 				sessionHandle.setSuspended(true);
+				cancelTask(sessionHandle);
 			}
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	public final void resumeSession(ExportSession session) {
-		try {
-			lock.lock();
+		final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
+
+		if (sessionHandle == null) {
+			log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
+			return;
+		}
+
+		dispatchSession(sessionHandle, SUSPENDED);
+	}
 
-			final ExportSessionHandle sessionHandle = sessions.get(session.getSessionId());
+	private void dispatchSession(ExportSessionHandle session, ExportSessionState expectedState) {
+		final ExportMemoryBudget.Reservation reservation;
 
-			if (sessionHandle == null) {
-				log.log(Level.WARNING, "Session {0} does not exist", session.getSessionId());
+		synchronized (pendingSessions) {
+			if (pendingSessions.stream().anyMatch(pendingSession -> pendingSession.session() == session)) {
 				return;
 			}
 
-			if (sessionHandle.getState() == SUSPENDED) {
-				sessionHandle.setSuspended(false);
+			// sessions are admitted in order, so that large sessions are not overtaken forever by small ones
+			reservation = pendingSessions.isEmpty() ? admitSession(session) : null;
 
-				scheduleQueue.add(sessionHandle);
+			if (reservation == null) {
+				pendingSessions.addLast(new PendingSession(session, expectedState));
+				log.log(Level.INFO, "Session {0} queued, memory in use {1} MB of {2} MB", new Object[] { session.getSessionId(), memoryBudget.getUsage() / MEGABYTE, memoryBudget.getCapacity() / MEGABYTE });
+				return;
 			}
-		} finally {
-			lock.unlock();
 		}
+
+		runSession(session, expectedState, reservation);
 	}
 
-	private void dispatchSession(ExportSessionHandle session) {
-		try {
-			lock.lock();
+	private void admitPendingSessions() {
+		while (true) {
+			final PendingSession pendingSession;
+			final ExportMemoryBudget.Reservation reservation;
 
-			session.setState(ExportSessionState.DISPATCHED);
+			synchronized (pendingSessions) {
+				pendingSession = pendingSessions.peekFirst();
 
-			dispatchQueue.add(session);
-		} finally {
-			lock.unlock();
-		}
+				if (pendingSession == null) {
+					return;
+				}
 
-		synchronized (this) {
-			if (delegate != null) {
-				delegate.notifyUpdate(session.getSession(), session.getState(), session.getProgress());
+				reservation = admitSession(pendingSession.session());
+
+				if (reservation == null) {
+					return;
+				}
+
+				pendingSessions.removeFirst();
 			}
+
+			runSession(pendingSession.session(), pendingSession.expectedState(), reservation);
 		}
 	}
 
-	private void removeSession(ExportSessionHandle session) {
-		try {
-			lock.lock();
+	private ExportMemoryBudget.Reservation admitSession(ExportSessionHandle session) {
+		// a session is dispatched again only when the previous task has finished using it
+		if (tasks.containsKey(session.getSessionId())) {
+			return null;
+		}
+
+		final ExportMemoryBudget.Reservation reservation = suspendedReservations.remove(session.getSessionId());
 
-			sessions.remove(session.getSessionId());
-		} finally {
-			lock.unlock();
+		if (reservation != null) {
+			return reservation;
 		}
 
-		synchronized (this) {
-			if (delegate != null) {
-				delegate.notifyUpdate(session.getSession(), session.getState(), session.getProgress());
+		return memoryBudget.tryReserve(memoryEstimator.estimate(session));
+	}
+
+	private boolean removePendingSession(ExportSessionHandle session) {
+		synchronized (pendingSessions) {
+			return pendingSessions.removeIf(pendingSession -> pendingSession.session() == session);
+		}
+	}
+
+	private void releaseMemory(ExportSessionHandle session, ExportMemoryBudget.Reservation reservation) {
+		// a suspended still image keeps its frame buffer, therefore it keeps its memory until it is resumed or terminated
+		synchronized (session) {
+			if (session.getState() == SUSPENDED && session.getSession().getFrameBuffer() != null) {
+				suspendedReservations.put(session.getSessionId(), reservation);
+			} else {
+				memoryBudget.release(reservation);
 			}
 		}
+
+		admitPendingSessions();
 	}
 
-	private void updateSession(ExportSessionHandle session) {
-		try {
-			lock.lock();
+	private void runSession(ExportSessionHandle session, ExportSessionState expectedState, ExportMemoryBudget.Reservation reservation) {
+		final ExportSessionTask task = new ExportSessionTask(session, scheduler, encodeExecutor, this::updateSession, exportRenderer);
+
+		boolean dispatched = false;
+
+		synchronized (session) {
+			if (session.getState() == expectedState) {
+				session.setSuspended(false);
 
-			if (SESSION_STATES.contains(session.getState())) {
-				executor.submit(new DelayedRemove(session));
+				session.setState(DISPATCHED);
+
+				tasks.put(session.getSessionId(), task);
+
+				dispatched = true;
 			}
-		} finally {
-			lock.unlock();
 		}
 
-		synchronized (this) {
-			if (delegate != null) {
-				delegate.notifyUpdate(session.getSession(), session.getState(), session.getProgress());
+		if (!dispatched) {
+			releaseMemory(session, reservation);
+			return;
+		}
+
+		notifyUpdate(session);
+
+		CompletableFuture.runAsync(task, executor).whenComplete((_, e) -> {
+			if (e != null) {
+				log.log(Level.WARNING, "Cannot process session " + session.getSessionId(), e);
+			}
+			tasks.remove(session.getSessionId(), task);
+			// the reservation belongs to this task, therefore it can't be released by another task of the same session
+			releaseMemory(session, reservation);
+			if (tasks.isEmpty()) {
+				// the idle images of the tiles are not reused until the next session starts
+				ImagePool.getSharedPool().clear();
 			}
+		});
+	}
+
+	private void updateSession(ExportSessionHandle session) {
+		if (SESSION_STATES.contains(session.getState())) {
+			scheduleTerminate(session);
 		}
+
+		notifyUpdate(session);
+	}
+
+	private void scheduleTerminate(ExportSessionHandle session) {
+		CompletableFuture.runAsync(() -> terminateSession(session), CompletableFuture.delayedExecutor(TERMINATE_DELAY, TimeUnit.MILLISECONDS, executor));
 	}
 
 	private void terminateSession(ExportSessionHandle session) {
-		try {
-			lock.lock();
+		final ExportSessionState previousState;
 
-			session.setState(ExportSessionState.TERMINATED);
+		synchronized (session) {
+			previousState = session.getState();
 
-			removeQueue.add(session);
-		} finally {
-			lock.unlock();
+			if (previousState == ExportSessionState.TERMINATED) {
+				return;
+			}
+
+			session.setState(ExportSessionState.TERMINATED);
 		}
-	}
 
-	private Optional<ExportSessionHandle> pollScheduleQueue() {
-        try {
-            return Optional.ofNullable(scheduleQueue.poll(30, TimeUnit.SECONDS));
-        } catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			return Optional.empty();
-        }
-    }
-
-	private Optional<ExportSessionHandle> pollDispatchQueue() {
-		try {
-			return Optional.ofNullable(dispatchQueue.poll(30, TimeUnit.SECONDS));
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			return Optional.empty();
+		removePendingSession(session);
+
+		if (previousState == SUSPENDED) {
+			// a suspended session still has its encoder open, and it might still hold its frame buffer
+			try {
+				session.closeEncoder();
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Cannot close encoder of session " + session.getSessionId(), e);
+			}
 		}
-	}
 
-	private Optional<ExportSessionHandle> pollRemoveQueue() {
-		try {
-			return Optional.ofNullable(removeQueue.poll(30, TimeUnit.SECONDS));
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			return Optional.empty();
+		final ExportMemoryBudget.Reservation reservation = suspendedReservations.remove(session.getSessionId());
+
+		if (reservation != null) {
+			memoryBudget.release(reservation);
+
+			admitPendingSessions();
 		}
+
+		log.log(Level.INFO, "Session {0} terminated", session.getSessionId());
+
+		sessions.remove(session.getSessionId(), session);
+
+		notifyUpdate(session);
 	}
 
-	private class DelayedRemove implements Runnable {
-		private final ExportSessionHandle session;
+	private void cancelTask(ExportSessionHandle session) {
+		final ExportSessionTask task = tasks.get(session.getSessionId());
 
-		public DelayedRemove(ExportSessionHandle session) {
-			this.session = session;
+		if (task != null) {
+			task.cancel();
 		}
+	}
 
-		@Override
-		public void run() {
-			try {
-				Thread.sleep(10000);
+	private record PendingSession(ExportSessionHandle session, ExportSessionState expectedState) {}
 
-				log.log(Level.INFO, "Session {0} terminated", session.getSessionId());
+	private void notifyUpdate(ExportSessionHandle session) {
+		final ExportServiceDelegate delegate = this.delegate;
 
-				terminateSession(session);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
+		if (delegate != null) {
+			delegate.notifyUpdate(session.getSession(), session.getState(), session.getProgress());
 		}
 	}
 }
@@ -0,0 +1,81 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+import lombok.Getter;
+
+/**
+ * Keeps track of the memory reserved by the running export sessions. A session is admitted
+ * only when its estimated memory fits the remaining budget. A session which is larger than the
+ * whole budget is admitted when no other session holds a reservation, so that it doesn't wait
+ * forever. Each reservation is released once, by the task which owns it.
+ */
+public class ExportMemoryBudget {
+	@Getter
+	private final long capacity;
+	private long usage;
+	private int reservations;
+
+	public ExportMemoryBudget(long capacity) {
+		this.capacity = capacity;
+	}
+
+	public synchronized Reservation tryReserve(long bytes) {
+		if (reservations > 0 && usage + bytes > capacity) {
+			return null;
+		}
+		reservations += 1;
+		usage += bytes;
+		return new Reservation(bytes);
+	}
+
+	public synchronized void release(Reservation reservation) {
+		if (reservation.released) {
+			return;
+		}
+		reservation.released = true;
+		reservations -= 1;
+		usage -= reservation.bytes;
+	}
+
+	public synchronized long getUsage() {
+		return usage;
+	}
+
+	public synchronized int getReservations() {
+		return reservations;
+	}
+
+	public static final class Reservation {
+		@Getter
+		private final long bytes;
+		// guarded by the budget which created the reservation
+		private boolean released;
+
+		private Reservation(long bytes) {
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+import com.nextbreakpoint.nextfractal.core.encoder.Encoder;
+import com.nextbreakpoint.nextfractal.core.export.ExportSessionHandle;
+import com.nextbreakpoint.nextfractal.core.graphics.ImagePool;
+
+/**
+ * Estimates the peak memory used by an export session. The estimate counts the pixel buffers
+ * of the tiles being rendered, the idle images of the tiles, the frame buffers of the encoder,
+ * the frames assembled in memory, the frames waiting to be encoded and the frames kept for reuse. It doesn't need to be exact,
+ * but it must grow with the frame size, so that large sessions don't run at the same time.
+ */
+public class ExportMemoryEstimator {
+	// the image of the composer and the image of the tile including the border
+	private static final int TILE_BYTES_PER_PIXEL = 8;
+	// the pixels read by the encoder and the bitmap or the frames of the codec
+	private static final int ENCODER_BYTES_PER_PIXEL = 8;
+	private static final int FRAME_BYTES_PER_PIXEL = 4;
+
+	private final int workers;
+	private final int encodeWorkers;
+	private final int encodeQueueSize;
+	private final long frameMemoryBudget;
+	private final long frameStoreSize;
+	private final TileSizeTuner tileSizeTuner;
+
+	public ExportMemoryEstimator(int workers, int encodeWorkers, int encodeQueueSize, long frameMemoryBudget, long frameStoreSize, TileSizeTuner tileSizeTuner) {
+		this.workers = Math.max(1, workers);
+		this.encodeWorkers = Math.max(1, encodeWorkers);
+		this.encodeQueueSize = Math.max(1, encodeQueueSize);
+		this.frameMemoryBudget = frameMemoryBudget;
+		this.frameStoreSize = frameStoreSize;
+		this.tileSizeTuner = tileSizeTuner;
+	}
+
+	public long estimate(ExportSessionHandle session) {
+		final long framePixels = (long) session.getSize().width() * session.getSize().height();
+		// the tile size can grow while the session runs, therefore we count the largest tiles which the tuner can choose
+		final int tileSize = tileSizeTuner != null ? tileSizeTuner.maxTileSize(session.getTileSize(), session.getSize()) : session.getTileSize();
+		final long tilePixels = (long) tileSize * tileSize;
+		final long frameBytes = framePixels * FRAME_BYTES_PER_PIXEL;
+		final Encoder encoder = session.getSession().getEncoder();
+		final long tileBytes = Math.min(workers, Math.max(1, session.getJobsCount())) * tilePixels * TILE_BYTES_PER_PIXEL;
+		// the idle images are kept by the shared pool, which is bounded by bytes
+		long bytes = tileBytes + Math.min(tileBytes, ImagePool.getSharedPool().getMaxIdleBytes());
+		if (session.getFrameCount() <= 1) {
+			if (frameBytes <= frameMemoryBudget) {
+				bytes += frameBytes;
+			}
+			bytes += framePixels * ENCODER_BYTES_PER_PIXEL;
+		} else {
+			if (encoder.isSequenceSupported()) {
+				bytes += encodeQueueSize * frameBytes;
+				bytes += Math.min(encodeWorkers, encodeQueueSize) * framePixels * ENCODER_BYTES_PER_PIXEL;
+			} else {
+				bytes += framePixels * ENCODER_BYTES_PER_PIXEL;
+			}
+			bytes += Math.min(frameStoreSize, session.getFrameCount() * frameBytes) + frameBytes;
+		}
+		return bytes;
+	}
+}
@@ -25,97 +25,129 @@
 package com.nextbreakpoint.nextfractal.runtime.export;
 
 import com.nextbreakpoint.nextfractal.core.encoder.EncoderException;
+import com.nextbreakpoint.nextfractal.core.encoder.MemoryEncoderContext;
 import com.nextbreakpoint.nextfractal.core.export.ExportJobHandle;
 import com.nextbreakpoint.nextfractal.core.export.ExportJobState;
 import com.nextbreakpoint.nextfractal.core.export.ExportRenderer;
 import com.nextbreakpoint.nextfractal.core.export.ExportSessionHandle;
 import com.nextbreakpoint.nextfractal.core.export.ExportSessionState;
+import com.nextbreakpoint.nextfractal.core.export.ExportSessionStatistics;
 import lombok.extern.java.Log;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
 import java.util.logging.Level;
 
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_ENCODE_QUEUE_SIZE;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_FRAME_MEMORY_BUDGET;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_FRAME_STORE_SIZE;
+import static com.nextbreakpoint.nextfractal.runtime.export.SystemProperties.PROPERTY_EXPORT_TILE_AUTOTUNE;
+
 @Log
 public class ExportSessionTask implements Runnable {
     private static final int MAX_CONSECUTIVE_FRAMES = 100;
+    private static final int STILL_IMAGE_WEIGHT = 2;
+    private static final int ANIMATION_WEIGHT = 1;
 
-    private final Supplier<Optional<ExportSessionHandle>> pollQueue;
+    private final ExportSessionHandle session;
     private final Consumer<ExportSessionHandle> updateSession;
     private final ExportRenderer exportRenderer;
-    private final ExecutorService executor;
-
-    public ExportSessionTask(ExecutorService executor, Supplier<Optional<ExportSessionHandle>> pollQueue, Consumer<ExportSessionHandle> updateSession, ExportRenderer exportRenderer) {
-        this.executor = Objects.requireNonNull(executor);
-        this.pollQueue = Objects.requireNonNull(pollQueue);
+    private final TileScheduler scheduler;
+    private final FrameStore frameStore;
+    private final TileSizeTuner tileSizeTuner;
+    private final Executor encodeExecutor;
+    private final Semaphore encodePermits;
+    private final List<CompletableFuture<Void>> encodeFutures = new ArrayList<>();
+    private volatile List<CompletableFuture<ExportJobHandle>> futures = List.of();
+
+    public ExportSessionTask(ExportSessionHandle session, TileScheduler scheduler, Executor encodeExecutor, Consumer<ExportSessionHandle> updateSession, ExportRenderer exportRenderer) {
+        this.session = Objects.requireNonNull(session);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.encodeExecutor = Objects.requireNonNull(encodeExecutor);
         this.updateSession = Objects.requireNonNull(updateSession);
         this.exportRenderer = Objects.requireNonNull(exportRenderer);
+        // frames of a sequence are independent, therefore they are encoded while the next frames are rendered
+        encodePermits = session.getFrameCount() > 1 && session.getSession().getEncoder().isSequenceSupported() ? new Semaphore(Integer.getInteger(PROPERTY_EXPORT_ENCODE_QUEUE_SIZE, 4)) : null;
+        frameStore = session.getFrameCount() > 1 ? new FrameStore(Long.getLong(PROPERTY_EXPORT_FRAME_STORE_SIZE, 256L) * 1024L * 1024L) : null;
+        tileSizeTuner = Boolean.parseBoolean(System.getProperty(PROPERTY_EXPORT_TILE_AUTOTUNE, "true")) ? new TileSizeTuner(scheduler.getWorkers()) : null;
     }
 
     @Override
     public void run() {
-        try {
-            while (!Thread.interrupted()) {
-                log.log(Level.FINE, "Polling dispatched sessions...");
-
-                pollQueue.get().ifPresent(this::execute);
-            }
-        } catch (Exception e) {
-            log.log(Level.WARNING, "An error occurred while processing session", e);
-        }
-    }
-
-    private void execute(ExportSessionHandle session) {
         try {
             log.log(Level.INFO, "Start processing session {0}", session.getSessionId());
 
-            session.openEncoder();
+            // still images which fit the budget are assembled in memory without using the temporary file
+            session.openEncoder(Long.getLong(PROPERTY_EXPORT_FRAME_MEMORY_BUDGET, 512L) * 1024L * 1024L);
+
+            if (tileSizeTuner != null && session.getFrameNumber() == 0 && session.getCompletedJobsCount() == 0) {
+                calibrateTileSize(session);
+            }
 
             while (session.getState() == ExportSessionState.DISPATCHED) {
                 log.log(Level.INFO, "Processing jobs for session {0}", session.getSessionId());
 
                 if (session.isFrameCompleted()) {
+                    if (tileSizeTuner != null) {
+                        adaptTileSize(session);
+                    }
+
                     resetJobs(session);
                 }
 
-                final List<CompletableFuture<ExportJobHandle>> futures = dispatchJobs(session);
+                printFrame(session);
 
-                final CompletableFuture<Void> compositeFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[]{}));
+                final boolean reused = reuseFrame(session);
 
-                printFrame(session);
+                if (!reused) {
+                    futures = dispatchJobs(session);
+
+                    // the session might have been suspended or cancelled before the jobs were dispatched
+                    if (session.isSuspended() || session.isCancelled()) {
+                        cancel();
+                    }
 
-                while (!compositeFuture.isDone()) {
                     try {
-                        compositeFuture.get(5, TimeUnit.SECONDS);
-                    } catch (TimeoutException _) {
+                        CompletableFuture.allOf(futures.toArray(new CompletableFuture[]{})).get();
+                    } catch (CancellationException | ExecutionException e) {
+                        if (!session.isSuspended() && !session.isCancelled()) {
+                            throw e;
+                        }
                     }
 
-                    session.updateProgress();
+                    futures = List.of();
+                }
 
-                    updateSession.accept(session);
+                if (session.isFrameCompleted()) {
+                    log.log(Level.INFO, "Frame {0} of session {1} completed", new Object[] { session.getFrameNumber(), session.getSessionId() });
 
-                    log.log(Level.INFO, "Frame {0} of session {1}: {2}%", new Object[] { session.getFrameNumber(), session.getSessionId(), Math.rint(session.getProgress() * 100) });
+                    final byte[] pixels = !reused ? storeFrame(session) : null;
 
-                    if (session.isSuspended() || session.isCancelled()) {
-                        futures.forEach(future -> cancelFrame(session, future));
+                    if (encodePermits != null) {
+                        encodeFrameAsync(session, pixels);
+                    } else {
+                        final long time = System.currentTimeMillis();
+                        final int frameNumber = session.getFrameNumber();
+                        final int repeatFrameCount = advanceFrame(session);
+                        session.encode(frameNumber, repeatFrameCount, session.getFrameCount());
+                        session.recordEncode(System.currentTimeMillis() - time, repeatFrameCount);
                     }
-                }
 
-                if (session.isFrameCompleted()) {
-                    log.log(Level.INFO, "Frame {0} of session {1} completed", new Object[] { session.getFrameNumber(), session.getSessionId() });
+                    session.updateProgress();
 
-                    session.encode(session.getFrameNumber(), advanceFrame(session), session.getFrameCount());
+                    updateSession.accept(session);
                 }
 
                 if (session.isSessionCompleted()) {
@@ -127,10 +159,15 @@ public class ExportSessionTask implements Runnable {
                 }
             }
 
-            if (session.getState() != ExportSessionState.SUSPENDED) {
+            // the state can't change after the loop, because the session is not dispatched again until this task completes
+            final ExportSessionState state = session.getState();
+
+            awaitEncodedFrames();
+
+            if (state != ExportSessionState.SUSPENDED) {
                 session.closeEncoder();
             }
-        } catch (EncoderException | IOException | ExecutionException e) {
+        } catch (EncoderException | IOException | ExecutionException | CancellationException e) {
             log.log(Level.WARNING, "Cannot process session", e);
 
             session.setState(ExportSessionState.FAILED);
@@ -144,19 +181,150 @@ public class ExportSessionTask implements Runnable {
 
         log.log(Level.INFO, "Stop processing session {0}", session.getSessionId());
 
+        printStatistics(session);
+
         session.updateProgress();
 
         updateSession.accept(session);
     }
 
-    private static void cancelFrame(ExportSessionHandle session, CompletableFuture<ExportJobHandle> future) {
-        try {
-            future.cancel(false);
-        } catch (CancellationException e) {
+    public void cancel() {
+        futures.forEach(this::cancelFrame);
+    }
+
+    private void cancelFrame(CompletableFuture<ExportJobHandle> future) {
+        if (future.cancel(false)) {
             log.log(Level.INFO, "Frame {0} of session {1} aborted", new Object[] { session.getFrameNumber(), session.getSessionId() });
         }
     }
 
+    private void calibrateTileSize(ExportSessionHandle session) throws InterruptedException, ExecutionException {
+        final int tileSize = tileSizeTuner.initialTileSize(session.getSize());
+        if (tileSize != session.getTileSize()) {
+            session.setTileSize(tileSize);
+        }
+        if (session.getJobsCount() <= 1) {
+            return;
+        }
+        // the first tile of the frame is rendered alone, and it is kept when the tile size doesn't change
+        final ExportJobHandle job = session.getJobs().iterator().next();
+        futures = List.of(dispatchJob(session, job, scheduler.executor(session.getSessionId(), weight(session))));
+        if (session.isSuspended() || session.isCancelled()) {
+            cancel();
+        }
+        try {
+            futures.getFirst().get();
+        } catch (CancellationException _) {
+            return;
+        } finally {
+            futures = List.of();
+        }
+        if (job.getState() == ExportJobState.COMPLETED) {
+            final int newTileSize = tileSizeTuner.adaptTileSize(tileSize, job.getElapsedTime(), session.getSize());
+            log.log(Level.INFO, "Session {0}: tile of {1} pixels rendered in {2} ms", new Object[] { session.getSessionId(), tileSize, job.getElapsedTime() });
+            if (newTileSize != tileSize) {
+                session.setTileSize(newTileSize);
+            }
+        }
+    }
+
+    private void adaptTileSize(ExportSessionHandle session) {
+        // frames which have been reused don't have render times
+        final long[] times = session.getJobs().stream().mapToLong(ExportJobHandle::getElapsedTime).filter(time -> time > 0).toArray();
+        if (times.length == 0) {
+            return;
+        }
+        final long averageTime = Arrays.stream(times).sum() / times.length;
+        final int tileSize = tileSizeTuner.adaptTileSize(session.getTileSize(), averageTime, session.getSize());
+        if (tileSize != session.getTileSize()) {
+            log.log(Level.INFO, "Session {0}: tile size changed from {1} to {2} pixels", new Object[] { session.getSessionId(), session.getTileSize(), tileSize });
+            session.setTileSize(tileSize);
+        }
+    }
+
+    private boolean reuseFrame(ExportSessionHandle session) throws IOException {
+        if (frameStore == null) {
+            return false;
+        }
+        final byte[] pixels = frameStore.get(session.getCurrentFrame());
+        if (pixels == null) {
+            return false;
+        }
+        log.log(Level.INFO, "Frame {0} of session {1} reused", new Object[] { session.getFrameNumber(), session.getSessionId() });
+        try (RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "rw")) {
+            raf.write(pixels);
+        }
+        session.getJobs().forEach(job -> job.setState(ExportJobState.COMPLETED));
+        return true;
+    }
+
+    // the pixels are never modified after reading, therefore the store and the encoder share the same array
+    private byte[] storeFrame(ExportSessionHandle session) throws IOException {
+        if (frameStore == null) {
+            return null;
+        }
+        final byte[] pixels = readFrame(session);
+        frameStore.put(session.getCurrentFrame(), pixels);
+        return pixels;
+    }
+
+    private static byte[] readFrame(ExportSessionHandle session) throws IOException {
+        final byte[] pixels = new byte[session.getSize().width() * session.getSize().height() * 4];
+        try (RandomAccessFile raf = new RandomAccessFile(session.getTmpFile(), "r")) {
+            raf.readFully(pixels);
+        }
+        return pixels;
+    }
+
+    private void encodeFrameAsync(ExportSessionHandle session, byte[] storedPixels) throws IOException, InterruptedException, ExecutionException {
+        checkEncodedFrames();
+        // the number of frames waiting to be encoded is bounded, so that memory doesn't grow when encoding is slower than rendering
+        encodePermits.acquire();
+        try {
+            final byte[] pixels = storedPixels != null ? storedPixels : readFrame(session);
+            final MemoryEncoderContext context = new MemoryEncoderContext(session.getSessionId(), pixels, session.getSize().width(), session.getSize().height(), session.getFrameRate());
+            final int frameNumber = session.getFrameNumber();
+            final int frameCount = session.getFrameCount();
+            final int repeatFrameCount = advanceFrame(session);
+            encodeFutures.add(CompletableFuture.runAsync(() -> encodeFrame(session, context, frameNumber, repeatFrameCount, frameCount), encodeExecutor)
+                    .whenComplete((_, _) -> encodePermits.release()));
+        } catch (IOException | RuntimeException e) {
+            encodePermits.release();
+            throw e;
+        }
+    }
+
+    private static void encodeFrame(ExportSessionHandle session, MemoryEncoderContext context, int frameNumber, int repeatFrameCount, int frameCount) {
+        try {
+            final long time = System.currentTimeMillis();
+            session.encode(context, frameNumber, repeatFrameCount, frameCount);
+            session.recordEncode(System.currentTimeMillis() - time, repeatFrameCount);
+            log.log(Level.INFO, "Frame {0} of session {1} encoded", new Object[] { frameNumber, session.getSessionId() });
+        } catch (EncoderException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void checkEncodedFrames() throws InterruptedException, ExecutionException {
+        final Iterator<CompletableFuture<Void>> iterator = encodeFutures.iterator();
+        while (iterator.hasNext()) {
+            final CompletableFuture<Void> future = iterator.next();
+            if (future.isDone()) {
+                iterator.remove();
+                // rethrows the failure of the encoder, if any
+                future.get();
+            }
+        }
+    }
+
+    private void awaitEncodedFrames() throws InterruptedException, ExecutionException {
+        try {
+            CompletableFuture.allOf(encodeFutures.toArray(new CompletableFuture[]{})).get();
+        } finally {
+            encodeFutures.clear();
+        }
+    }
+
     private static int advanceFrame(ExportSessionHandle session) {
         int count = 0;
         while (count++ < MAX_CONSECUTIVE_FRAMES && session.nextFrame() && !isLastFrame(session) && !isKeyFrame(session) && isRepeated(session)) {
@@ -165,6 +333,13 @@ public class ExportSessionTask implements Runnable {
         return count;
     }
 
+    private static void printStatistics(ExportSessionHandle session) {
+        final ExportSessionStatistics statistics = session.getStatistics();
+        log.info("Session %s: %d tiles (%.1f/s), render %d ms, write %d ms, wait %d ms per tile; %d frames (%.1f/s), encode %d ms per frame".formatted(
+                session.getSessionId(), statistics.completedTiles(), statistics.tilesPerSecond(), statistics.averageRenderTime(), statistics.averageWriteTime(),
+                statistics.averageQueueWaitTime(), statistics.encodedFrames(), statistics.framesPerSecond(), statistics.averageEncodeTime()));
+    }
+
     private static void printFrame(ExportSessionHandle session) {
         log.info("Session %s: Frame %d of %d".formatted(session.getSessionId(), session.getFrameNumber() + 1, session.getFrameCount()));
     }
@@ -182,17 +357,44 @@ public class ExportSessionTask implements Runnable {
     }
 
     private List<CompletableFuture<ExportJobHandle>> dispatchJobs(ExportSessionHandle session) {
+        final Executor executor = scheduler.executor(session.getSessionId(), weight(session));
         return session.getJobs()
                 .stream()
                 .filter(job -> job.getState() != ExportJobState.COMPLETED)
-                .collect(ArrayList::new, (list, job) -> list.add(dispatchJob(session, job)), ArrayList::addAll);
+                .collect(ArrayList::new, (list, job) -> list.add(dispatchJob(session, job, executor)), ArrayList::addAll);
+    }
+
+    private CompletableFuture<ExportJobHandle> dispatchJob(ExportSessionHandle session, ExportJobHandle job, Executor executor) {
+        final long queueTime = System.currentTimeMillis();
+        final CompletableFuture<ExportJobHandle> future = CompletableFuture.supplyAsync(() -> renderTile(session, job, queueTime), executor);
+        if (session.getFrameCount() <= 1) {
+            // the progress of a still image depends on the completed tiles
+            future.thenRun(() -> {
+                session.updateProgress();
+                updateSession.accept(session);
+            });
+        }
+        return future;
     }
 
-    private CompletableFuture<ExportJobHandle> dispatchJob(ExportSessionHandle session, ExportJobHandle job) {
-        return CompletableFuture.supplyAsync(() -> exportRenderer.execute(job, session.getCurrentFrame()), executor);
+    private ExportJobHandle renderTile(ExportSessionHandle session, ExportJobHandle job, long queueTime) {
+        final long waitTime = System.currentTimeMillis() - queueTime;
+        final ExportJobHandle result = exportRenderer.execute(job, session.getCurrentFrame());
+        if (result.getState() == ExportJobState.COMPLETED) {
+            session.recordTile(waitTime, result.getElapsedTime(), result.getWriteTime());
+        }
+        return result;
     }
 
     private void resetJobs(ExportSessionHandle session) {
-        session.getJobs().forEach(job -> job.setState(ExportJobState.READY));
+        session.getJobs().forEach(job -> {
+            job.setState(ExportJobState.READY);
+            job.setElapsedTime(0);
+        });
+    }
+
+    private static int weight(ExportSessionHandle session) {
+        // still images are given a larger share, so that they don't wait behind long animations
+        return session.getFrameCount() > 1 ? ANIMATION_WEIGHT : STILL_IMAGE_WEIGHT;
     }
 }
@@ -0,0 +1,78 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+import com.nextbreakpoint.nextfractal.core.common.AnimationFrame;
+import com.nextbreakpoint.nextfractal.core.common.Metadata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the pixels of rendered frames, so that a frame which appears again anywhere in the
+ * animation doesn't need to be rendered again. Frames are the same when they are the same
+ * according to AnimationFrame.isSame. The least recently used frames are evicted first.
+ */
+public class FrameStore {
+	private final Map<FrameKey, byte[]> frames = new LinkedHashMap<>(16, 0.75f, true);
+	private final long maxBytes;
+	private long bytes;
+
+	public FrameStore(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public byte[] get(AnimationFrame frame) {
+		return frames.get(FrameKey.of(frame));
+	}
+
+	public void put(AnimationFrame frame, byte[] pixels) {
+		if (pixels.length > maxBytes) {
+			return;
+		}
+		final byte[] previousPixels = frames.put(FrameKey.of(frame), pixels);
+		if (previousPixels != null) {
+			bytes -= previousPixels.length;
+		}
+		bytes += pixels.length;
+		final Iterator<byte[]> iterator = frames.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			bytes -= iterator.next().length;
+			iterator.remove();
+		}
+	}
+
+	public void clear() {
+		frames.clear();
+		bytes = 0;
+	}
+
+	private record FrameKey(String pluginId, String script, Metadata metadata) {
+		public static FrameKey of(AnimationFrame frame) {
+			return new FrameKey(frame.pluginId(), frame.script(), frame.metadata());
+		}
+	}
+}
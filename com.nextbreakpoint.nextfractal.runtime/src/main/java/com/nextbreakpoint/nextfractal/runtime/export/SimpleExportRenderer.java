@@ -51,24 +51,36 @@ public class SimpleExportRenderer implements ExportRenderer {
 	public ExportJobHandle execute(ExportJobHandle job, AnimationFrame frame) {
 		final ExportProfile profile = job.getJob().getProfile();
 
+		ImageComposer composer = null;
+
 		try {
 			log.log(Level.FINE, "Begin rendering tile {0}", job.toString());
 
 			job.setState(ExportJobState.READY);
 
-			final ImageComposer composer = createImageComposer(profile, frame);
+			final long time = System.currentTimeMillis();
+
+			composer = createImageComposer(profile, frame);
 
 			final IntBuffer pixels = composer.renderImage(frame.script(), frame.metadata());
 
 			if (composer.isAborted()) {
 				job.setState(ExportJobState.INTERRUPTED);
 			} else {
+				final long writeTime = System.currentTimeMillis();
 				job.getJob().writePixels(composer.getSize(), pixels);
+				job.setWriteTime(System.currentTimeMillis() - writeTime);
+				job.setElapsedTime(System.currentTimeMillis() - time);
 				job.setState(ExportJobState.COMPLETED);
 			}
 		} catch (Exception e) {
 			log.log(Level.WARNING, "Cannot render tile", e);
 			job.setState(ExportJobState.FAILED);
+		} finally {
+			// the pixels are written already, therefore the image can be used for the next tile
+			if (composer != null) {
+				composer.release();
+			}
 		}
 
 		log.log(Level.FINE, "End rendering tile {0}", job.toString());
@@ -0,0 +1,35 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+public interface SystemProperties {
+    String PROPERTY_EXPORT_WORKERS = "com.nextbreakpoint.nextfractal.runtime.export.workers";
+    String PROPERTY_EXPORT_FRAME_STORE_SIZE = "com.nextbreakpoint.nextfractal.runtime.export.frame.store.size";
+    String PROPERTY_EXPORT_TILE_AUTOTUNE = "com.nextbreakpoint.nextfractal.runtime.export.tile.autotune";
+    String PROPERTY_EXPORT_ENCODE_WORKERS = "com.nextbreakpoint.nextfractal.runtime.export.encode.workers";
+    String PROPERTY_EXPORT_ENCODE_QUEUE_SIZE = "com.nextbreakpoint.nextfractal.runtime.export.encode.queue.size";
+    String PROPERTY_EXPORT_MEMORY_BUDGET = "com.nextbreakpoint.nextfractal.runtime.export.memory.budget";
+    String PROPERTY_EXPORT_FRAME_MEMORY_BUDGET = "com.nextbreakpoint.nextfractal.runtime.export.frame.memory.budget";
+}
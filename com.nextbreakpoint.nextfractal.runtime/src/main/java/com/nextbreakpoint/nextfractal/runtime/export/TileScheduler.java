@@ -0,0 +1,156 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+import com.nextbreakpoint.nextfractal.core.common.ExecutorUtils;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Runs the tile jobs of all export sessions on one pool of workers. Each session has its own queue,
+ * and the workers use stride scheduling to pick the next job: the session which has received the
+ * least service in proportion to its weight goes first, so that sessions share the workers fairly.
+ */
+@Log
+public class TileScheduler {
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final Map<String, SessionQueue> queues = new LinkedHashMap<>();
+	private final ExecutorService executor;
+	@Getter
+	private final int workers;
+	private double virtualTime;
+	private boolean shutdown;
+
+	public TileScheduler(int workers, ThreadFactory threadFactory) {
+		this.workers = Math.max(1, workers);
+		executor = ExecutorUtils.newFixedThreadPool(this.workers, threadFactory);
+		for (int i = 0; i < this.workers; i++) {
+			executor.submit(this::work);
+		}
+	}
+
+	public Executor executor(String sessionId, int weight) {
+		return task -> submit(sessionId, weight, task);
+	}
+
+	public void submit(String sessionId, int weight, Runnable task) {
+		lock.lock();
+		try {
+			if (shutdown) {
+				throw new RejectedExecutionException("Scheduler has been shutdown");
+			}
+			queues.computeIfAbsent(sessionId, _ -> new SessionQueue(Math.max(1, weight), virtualTime)).tasks.addLast(task);
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			queues.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		ExecutorUtils.shutdown(executor);
+	}
+
+	private void work() {
+		try {
+			for (;;) {
+				final Runnable task = take();
+				if (task == null) {
+					return;
+				}
+				try {
+					task.run();
+				} catch (Exception e) {
+					log.log(Level.WARNING, "Cannot execute tile job", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Runnable take() throws InterruptedException {
+		lock.lock();
+		try {
+			for (;;) {
+				if (shutdown) {
+					return null;
+				}
+				String nextSessionId = null;
+				SessionQueue nextQueue = null;
+				for (Map.Entry<String, SessionQueue> entry : queues.entrySet()) {
+					if (nextQueue == null || entry.getValue().pass < nextQueue.pass) {
+						nextSessionId = entry.getKey();
+						nextQueue = entry.getValue();
+					}
+				}
+				if (nextQueue != null) {
+					final Runnable task = nextQueue.tasks.pollFirst();
+					// sessions which become idle are removed, and they start again from the current time
+					virtualTime = nextQueue.pass;
+					nextQueue.pass += 1.0 / nextQueue.weight;
+					if (nextQueue.tasks.isEmpty()) {
+						queues.remove(nextSessionId);
+					}
+					return task;
+				}
+				available.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static class SessionQueue {
+		private final Deque<Runnable> tasks = new ArrayDeque<>();
+		private final int weight;
+		private double pass;
+
+		public SessionQueue(int weight, double pass) {
+			this.weight = weight;
+			this.pass = pass;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * NextFractal 2.4.0
+ * https://github.com/nextbreakpoint/nextfractal
+ *
+ * Copyright 2015-2024 Andrea Medeghini
+ *
+ * This file is part of NextFractal.
+ *
+ * NextFractal is an application for creating fractals and other graphics artifacts.
+ *
+ * NextFractal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * NextFractal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with NextFractal.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.nextbreakpoint.nextfractal.runtime.export;
+
+import com.nextbreakpoint.nextfractal.core.graphics.Size;
+
+/**
+ * Chooses the tile size of an export session. The initial size gives every worker a few tiles
+ * of the frame, then the size is adjusted from the measured render time of the tiles, so that
+ * tiles are large enough to amortize the setup of the composer, but small enough to balance
+ * the load between the workers and to report progress often.
+ */
+public class TileSizeTuner {
+	private static final int MIN_TILE_SIZE = 64;
+	private static final int MAX_TILE_SIZE = 2048;
+	private static final int TILES_PER_WORKER = 4;
+	private static final long MIN_TILE_TIME = 200;
+	private static final long MAX_TILE_TIME = 2000;
+
+	private final int workers;
+
+	public TileSizeTuner(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	public int initialTileSize(Size frameSize) {
+		final double area = (double) frameSize.width() * frameSize.height();
+		final int tileSize = Integer.highestOneBit((int) Math.max(1, Math.sqrt(area / (workers * TILES_PER_WORKER))));
+		return clamp(tileSize, frameSize);
+	}
+
+	public int adaptTileSize(int tileSize, long tileTime, Size frameSize) {
+		if (tileTime < MIN_TILE_TIME && tileCount(tileSize * 2, frameSize) >= workers * TILES_PER_WORKER) {
+			return clamp(tileSize * 2, frameSize);
+		}
+		if (tileTime > MAX_TILE_TIME) {
+			return clamp(tileSize / 2, frameSize);
+		}
+		return tileSize;
+	}
+
+	// tiles grow only while the frame has a few tiles for every worker, therefore the tuner
+	// doesn't choose a larger size than this, unless the session starts with a larger size
+	public int maxTileSize(int tileSize, Size frameSize) {
+		int maxTileSize = clamp(MAX_TILE_SIZE, frameSize);
+		while (maxTileSize > MIN_TILE_SIZE && tileCount(maxTileSize, frameSize) < workers * TILES_PER_WORKER) {
+			maxTileSize -= 1;
+		}
+		return Math.max(tileSize, Math.max(maxTileSize, initialTileSize(frameSize)));
+	}
+
+	private static int tileCount(int tileSize, Size frameSize) {
+		final int nx = (frameSize.width() + tileSize - 1) / tileSize;
+		final int ny = (frameSize.height() + tileSize - 1) / tileSize;
+		return nx * ny;
+	}
+
+	private static int clamp(int tileSize, Size frameSize) {
+		final int maxTileSize = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, Math.max(frameSize.width(), frameSize.height())));
+		return Math.max(MIN_TILE_SIZE, Math.min(maxTileSize, tileSize));
+	}
+}
@@ -25,8 +25,10 @@
 import com.nextbreakpoint.nextfractal.core.encoder.Encoder;
 import com.nextbreakpoint.nextfractal.runtime.encoder.AVIVideoEncoder;
 import com.nextbreakpoint.nextfractal.runtime.encoder.JPEGImageEncoder;
+import com.nextbreakpoint.nextfractal.runtime.encoder.JPEGSequenceEncoder;
 import com.nextbreakpoint.nextfractal.runtime.encoder.MP4VideoEncoder;
 import com.nextbreakpoint.nextfractal.runtime.encoder.PNGImageEncoder;
+import com.nextbreakpoint.nextfractal.runtime.encoder.PNGSequenceEncoder;
 import com.nextbreakpoint.nextfractal.runtime.encoder.QuicktimeVideoEncoder;
 
 module com.nextbreakpoint.nextfractal.runtime {
@@ -37,5 +39,5 @@ module com.nextbreakpoint.nextfractal.runtime {
     exports com.nextbreakpoint.nextfractal.runtime.logging;
     exports com.nextbreakpoint.nextfractal.runtime.export;
     exports com.nextbreakpoint.nextfractal.runtime.encoder;
-    provides Encoder with PNGImageEncoder, JPEGImageEncoder, QuicktimeVideoEncoder, MP4VideoEncoder, AVIVideoEncoder;
+    provides Encoder with PNGImageEncoder, JPEGImageEncoder, QuicktimeVideoEncoder, MP4VideoEncoder, AVIVideoEncoder, PNGSequenceEncoder, JPEGSequenceEncoder;
 }
@@ -0,0 +1,54 @@
+package com.nextbreakpoint.nextfractal.runtime.test;
+
+import com.nextbreakpoint.nextfractal.runtime.export.ExportMemoryBudget;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExportMemoryBudgetTest {
+	@Test
+	public void shouldAdmitSessionsWhichFitBudget() {
+		ExportMemoryBudget budget = new ExportMemoryBudget(100);
+		ExportMemoryBudget.Reservation reservation1 = budget.tryReserve(60);
+		ExportMemoryBudget.Reservation reservation2 = budget.tryReserve(40);
+		assertThat(reservation1).isNotNull();
+		assertThat(reservation2).isNotNull();
+		assertThat(budget.tryReserve(1)).isNull();
+		assertThat(budget.getUsage()).isEqualTo(100);
+		assertThat(budget.getReservations()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldAdmitOversizeSessionWhenBudgetIsEmpty() {
+		ExportMemoryBudget budget = new ExportMemoryBudget(100);
+		ExportMemoryBudget.Reservation reservation = budget.tryReserve(250);
+		assertThat(reservation).isNotNull();
+		assertThat(budget.getUsage()).isEqualTo(250);
+		assertThat(budget.tryReserve(10)).isNull();
+		budget.release(reservation);
+		assertThat(budget.tryReserve(10)).isNotNull();
+	}
+
+	@Test
+	public void shouldNotAdmitOversizeSessionWhileOtherSessionsRun() {
+		ExportMemoryBudget budget = new ExportMemoryBudget(100);
+		ExportMemoryBudget.Reservation reservation = budget.tryReserve(10);
+		assertThat(budget.tryReserve(250)).isNull();
+		budget.release(reservation);
+		assertThat(budget.tryReserve(250)).isNotNull();
+	}
+
+	@Test
+	public void shouldReleaseReservationOnce() {
+		ExportMemoryBudget budget = new ExportMemoryBudget(100);
+		ExportMemoryBudget.Reservation reservation1 = budget.tryReserve(60);
+		ExportMemoryBudget.Reservation reservation2 = budget.tryReserve(40);
+		budget.release(reservation1);
+		budget.release(reservation1);
+		assertThat(budget.getUsage()).isEqualTo(40);
+		assertThat(budget.getReservations()).isEqualTo(1);
+		budget.release(reservation2);
+		assertThat(budget.getUsage()).isEqualTo(0);
+		assertThat(budget.getReservations()).isEqualTo(0);
+	}
+}
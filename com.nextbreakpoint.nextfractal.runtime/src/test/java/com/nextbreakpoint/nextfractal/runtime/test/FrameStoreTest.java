@@ -0,0 +1,76 @@
+package com.nextbreakpoint.nextfractal.runtime.test;
+
+import com.nextbreakpoint.nextfractal.core.common.AnimationFrame;
+import com.nextbreakpoint.nextfractal.core.common.Metadata;
+import com.nextbreakpoint.nextfractal.core.common.Time;
+import com.nextbreakpoint.nextfractal.runtime.export.FrameStore;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameStoreTest {
+	@Test
+	public void shouldEvictLeastRecentlyUsedFrames() {
+		FrameStore store = new FrameStore(100);
+		AnimationFrame frame1 = createFrame("script1", true, false);
+		AnimationFrame frame2 = createFrame("script2", true, false);
+		AnimationFrame frame3 = createFrame("script3", true, false);
+		store.put(frame1, new byte[40]);
+		store.put(frame2, new byte[40]);
+		assertThat(store.get(frame1)).hasSize(40);
+		store.put(frame3, new byte[40]);
+		assertThat(store.get(frame1)).isNotNull();
+		assertThat(store.get(frame2)).isNull();
+		assertThat(store.get(frame3)).isNotNull();
+	}
+
+	@Test
+	public void shouldEvictFramesUntilSizeFits() {
+		FrameStore store = new FrameStore(100);
+		AnimationFrame frame1 = createFrame("script1", true, false);
+		AnimationFrame frame2 = createFrame("script2", true, false);
+		AnimationFrame frame3 = createFrame("script3", true, false);
+		store.put(frame1, new byte[30]);
+		store.put(frame2, new byte[30]);
+		store.put(frame3, new byte[90]);
+		assertThat(store.get(frame1)).isNull();
+		assertThat(store.get(frame2)).isNull();
+		assertThat(store.get(frame3)).hasSize(90);
+	}
+
+	@Test
+	public void shouldCountReplacedFrameOnce() {
+		FrameStore store = new FrameStore(100);
+		AnimationFrame frame1 = createFrame("script1", true, false);
+		AnimationFrame frame2 = createFrame("script2", true, false);
+		store.put(frame1, new byte[40]);
+		store.put(frame1, new byte[40]);
+		store.put(frame2, new byte[40]);
+		assertThat(store.get(frame1)).isNotNull();
+		assertThat(store.get(frame2)).isNotNull();
+	}
+
+	@Test
+	public void shouldNotStoreFrameLargerThanLimit() {
+		FrameStore store = new FrameStore(100);
+		AnimationFrame frame1 = createFrame("script1", true, false);
+		AnimationFrame frame2 = createFrame("script2", true, false);
+		store.put(frame1, new byte[40]);
+		store.put(frame2, new byte[101]);
+		assertThat(store.get(frame1)).isNotNull();
+		assertThat(store.get(frame2)).isNull();
+	}
+
+	@Test
+	public void shouldFindSameFrameRegardlessOfFlags() {
+		FrameStore store = new FrameStore(100);
+		store.put(createFrame("script1", true, false), new byte[40]);
+		assertThat(store.get(createFrame("script1", false, true))).hasSize(40);
+	}
+
+	private static AnimationFrame createFrame(String script, boolean keyFrame, boolean repeated) {
+		return new AnimationFrame("test", script, new TestMetadata(new Time(0, 1)), keyFrame, repeated);
+	}
+
+	private record TestMetadata(Time time) implements Metadata {}
+}
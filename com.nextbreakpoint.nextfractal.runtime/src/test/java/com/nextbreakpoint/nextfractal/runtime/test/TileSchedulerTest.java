@@ -0,0 +1,78 @@
+package com.nextbreakpoint.nextfractal.runtime.test;
+
+import com.nextbreakpoint.nextfractal.core.common.PlatformThreadFactory;
+import com.nextbreakpoint.nextfractal.runtime.export.TileScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TileSchedulerTest {
+	@Test
+	public void shouldShareWorkersInProportionToWeight() throws InterruptedException {
+		TileScheduler scheduler = new TileScheduler(1, new PlatformThreadFactory("Test", false, Thread.MIN_PRIORITY));
+		try {
+			List<String> output = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch release = blockWorker(scheduler);
+			CountDownLatch completed = new CountDownLatch(12);
+			submitTasks(scheduler, "A", 1, 4, output, completed);
+			submitTasks(scheduler, "B", 2, 8, output, completed);
+			release.countDown();
+			assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(output).containsExactly("A", "B", "B", "A", "B", "B", "A", "B", "B", "A", "B", "B");
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldRestartIdleSessionFromCurrentTime() throws InterruptedException {
+		TileScheduler scheduler = new TileScheduler(1, new PlatformThreadFactory("Test", false, Thread.MIN_PRIORITY));
+		try {
+			List<String> output = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch completed = new CountDownLatch(10);
+			submitTasks(scheduler, "A", 1, 10, output, completed);
+			assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+			output.clear();
+			// session A has become idle, therefore it doesn't keep the service received before
+			CountDownLatch release = blockWorker(scheduler);
+			CountDownLatch resumed = new CountDownLatch(6);
+			submitTasks(scheduler, "A", 1, 3, output, resumed);
+			submitTasks(scheduler, "B", 1, 3, output, resumed);
+			release.countDown();
+			assertThat(resumed.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(output).containsExactly("A", "B", "A", "B", "A", "B");
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	private static CountDownLatch blockWorker(TileScheduler scheduler) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.submit("blocker", 1, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		return release;
+	}
+
+	private static void submitTasks(TileScheduler scheduler, String sessionId, int weight, int count, List<String> output, CountDownLatch completed) {
+		for (int i = 0; i < count; i++) {
+			scheduler.submit(sessionId, weight, () -> {
+				output.add(sessionId);
+				completed.countDown();
+			});
+		}
+	}
+}
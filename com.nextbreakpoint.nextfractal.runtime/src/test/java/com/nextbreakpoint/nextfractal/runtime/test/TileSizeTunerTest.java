@@ -0,0 +1,28 @@
+package com.nextbreakpoint.nextfractal.runtime.test;
+
+import com.nextbreakpoint.nextfractal.core.graphics.Size;
+import com.nextbreakpoint.nextfractal.runtime.export.TileSizeTuner;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TileSizeTunerTest {
+	@Test
+	public void shouldNotGrowTilesBeyondMaxTileSize() {
+		Size frameSize = new Size(8192, 4096);
+		TileSizeTuner tuner = new TileSizeTuner(4);
+		int maxTileSize = tuner.maxTileSize(64, frameSize);
+		int tileSize = 64;
+		for (int i = 0; i < 20; i++) {
+			tileSize = tuner.adaptTileSize(tileSize, 1, frameSize);
+			assertThat(tileSize).isLessThanOrEqualTo(maxTileSize);
+		}
+		assertThat(tuner.initialTileSize(frameSize)).isLessThanOrEqualTo(maxTileSize);
+	}
+
+	@Test
+	public void shouldKeepLargerTileSizeOfSession() {
+		TileSizeTuner tuner = new TileSizeTuner(16);
+		assertThat(tuner.maxTileSize(4096, new Size(1024, 1024))).isEqualTo(4096);
+	}
+}